@@ -0,0 +1,59 @@
+package searchengine.benchmark;
+
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.openjdk.jmh.annotations.*;
+import searchengine.config.AnalyzerSettings;
+import searchengine.utils.TextAnalyzer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность общего TextAnalyzer при одновременной лемматизации из нескольких потоков.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+    private static final String TEXT = "Интернет-магазин предлагает купить ноутбуки и планшеты с доставкой по России. "
+            + "Покупатели оставляют отзывы о товарах, сравнивают цены и выбирают удобный способ оплаты. "
+            + "The store offers laptops, tablets and accessories with fast delivery and a two-year warranty. "
+            + "Customers compare prices, read reviews and choose the most convenient payment method.";
+
+    private TextAnalyzer textAnalyzer;
+
+    @Setup
+    public void setUp() throws IOException {
+        textAnalyzer = new TextAnalyzer(new RussianLuceneMorphology(), new EnglishLuceneMorphology(),
+                new AnalyzerSettings());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Map<String, Integer> analyze1Thread() {
+        return textAnalyzer.analyze(TEXT);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Map<String, Integer> analyze2Threads() {
+        return textAnalyzer.analyze(TEXT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Map<String, Integer> analyze4Threads() {
+        return textAnalyzer.analyze(TEXT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Map<String, Integer> analyze8Threads() {
+        return textAnalyzer.analyze(TEXT);
+    }
+}
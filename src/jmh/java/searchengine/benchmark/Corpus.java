@@ -0,0 +1,46 @@
+package searchengine.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Корпус из {@code src/jmh/resources/corpus}: русские и английские HTML-страницы двух сайтов
+ * и набор запросов к ним.
+ */
+final class Corpus {
+    static final String RU_SITE = "https://shop.example.ru";
+    static final String EN_SITE = "https://blog.example.com";
+    static final List<String> QUERIES = List.of("ноутбук для учёбы", "доставка ноутбуков по России",
+            "поисковый движок многопоточность", "laptop delivery", "search engine ranking", "index page api");
+
+    private static final List<String> PAGES = List.of("ru-laptops", "ru-news", "ru-course",
+            "en-laptops", "en-blog", "en-docs");
+
+    private Corpus() {
+    }
+
+    static List<Page> load() {
+        return PAGES.stream()
+                .map(name -> new Page(name, name.startsWith("ru-") ? RU_SITE : EN_SITE, read(name)))
+                .toList();
+    }
+
+    private static String read(String name) {
+        try (InputStream input = Objects.requireNonNull(Corpus.class.getResourceAsStream("/corpus/" + name + ".html"),
+                "Нет страницы корпуса: " + name)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    record Page(String name, String siteUrl, String html) {
+        String url(int copy) {
+            return siteUrl + "/" + name + "/" + copy;
+        }
+    }
+}
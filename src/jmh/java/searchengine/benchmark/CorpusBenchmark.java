@@ -0,0 +1,96 @@
+package searchengine.benchmark;
+
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.config.AnalyzerSettings;
+import searchengine.service.search.QueryHighlighter;
+import searchengine.utils.PageManager;
+import searchengine.utils.TextAnalyzer;
+import searchengine.utils.WordTokenizer;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Горячие пути индексации и выдачи на корпусе из {@link Corpus}: извлечение текста из HTML, разбиение на слова,
+ * лемматизация с подсчётом (бывшие extractWordsFromContent и mapLemmaAndCounts) и построение сниппетов.
+ * Одна операция — весь корпус.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CorpusBenchmark {
+    private static final Pattern QUERY_WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextAnalyzer textAnalyzer;
+    private List<String> htmls;
+    private List<String> texts;
+    private List<QueryHighlighter> highlighters;
+
+    @Setup
+    public void setUp() throws IOException {
+        textAnalyzer = new TextAnalyzer(new RussianLuceneMorphology(), new EnglishLuceneMorphology(),
+                new AnalyzerSettings());
+        htmls = new ArrayList<>();
+        texts = new ArrayList<>();
+        for (Corpus.Page page : Corpus.load()) {
+            Document document = Jsoup.parse(page.html());
+            htmls.add(page.html());
+            texts.add(PageManager.extractTitle(document) + " " + PageManager.extractPlainText(document));
+        }
+        highlighters = new ArrayList<>();
+        for (String query : Corpus.QUERIES) {
+            // Те же термины, что подсвечивает SearchServiceImpl.generateSnippet
+            Set<String> terms = new HashSet<>(textAnalyzer.lemmas(query));
+            for (String word : QUERY_WORD_SEPARATOR.split(query)) {
+                if (word.length() > 3) {
+                    terms.add(word);
+                }
+            }
+            highlighters.add(QueryHighlighter.compile(terms));
+        }
+    }
+
+    @Benchmark
+    public void extractText(Blackhole blackhole) {
+        for (String html : htmls) {
+            Document document = Jsoup.parse(html);
+            blackhole.consume(PageManager.extractTitle(document));
+            blackhole.consume(PageManager.extractPlainText(document));
+        }
+    }
+
+    @Benchmark
+    public int tokenize() {
+        int[] words = new int[1];
+        for (String text : texts) {
+            WordTokenizer.tokenize(text, (word, script) -> words[0]++);
+        }
+        return words[0];
+    }
+
+    @Benchmark
+    public void analyze(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(textAnalyzer.analyze(text));
+        }
+    }
+
+    @Benchmark
+    public void snippets(Blackhole blackhole) {
+        for (QueryHighlighter highlighter : highlighters) {
+            for (String text : texts) {
+                blackhole.consume(highlighter.snippet(text));
+            }
+        }
+    }
+}
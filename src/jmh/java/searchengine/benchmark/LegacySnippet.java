@@ -0,0 +1,105 @@
+package searchengine.benchmark;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Прежний алгоритм построения сниппета из SearchServiceImpl, сохранённый как точка отсчёта.
+ * Проверка наличия лемм у слова запроса заменена на {@code true}, поэтому оценка для него занижена.
+ */
+final class LegacySnippet {
+    private record Match(int start, int end) {
+    }
+
+    private LegacySnippet() {
+    }
+
+
+    static String buildSnippet(String text, String query, Set<String> sortLemmas) {
+        if (StringUtils.isBlank(query) || StringUtils.isBlank(text)) {
+            return "";
+        }
+        List<String> pageWords = Arrays.asList(text.split("[\\s,.!?;:]"));
+        List<String> queryWords = Arrays.asList(query.split("[\\s,.!?;:]"));
+        List<String> matchingWords = findAllMatchingWords(sortLemmas, pageWords, queryWords);
+        String matchingWord = findMatchingWord(matchingWords, pageWords);
+        if (matchingWord.isEmpty()) {
+            return "";
+        }
+        Pattern pattern = Pattern.compile("\\b" + matchingWord + "\\b");
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            return "";
+        }
+        int queryStart = matcher.start();
+        int queryEnd = matcher.end();
+        int snippetLength = 150;
+        int snippetStart = Math.max(0, queryStart - snippetLength);
+        int snippetEnd = Math.min(text.length(), queryEnd + snippetLength);
+        while (snippetStart > 0 && !Character.isWhitespace(text.charAt(snippetStart - 1))) {
+            snippetStart--;
+        }
+        while (snippetEnd < text.length() && !Character.isWhitespace(text.charAt(snippetEnd))) {
+            snippetEnd++;
+        }
+        String snippetRaw = text.substring(snippetStart, snippetEnd);
+        StringBuilder snippet = new StringBuilder();
+        if (snippetStart > 0) {
+            snippet.append("...");
+        }
+        List<Match> allMatches = new ArrayList<>();
+        Set<String> allMatchingWords = new HashSet<>(matchingWords);
+        allMatchingWords.addAll(queryWords);
+        allMatchingWords.forEach(word -> {
+            Matcher wordMatcher = Pattern.compile("\\b" + word + "\\b")
+                    .matcher(snippetRaw);
+            while (wordMatcher.find()) {
+                allMatches.add(new Match(wordMatcher.start(), wordMatcher.end()));
+            }
+        });
+        allMatches.sort(Comparator.comparingInt(Match::start));
+        snippet = highlightingSnippet(allMatches, snippetRaw, snippet);
+        if (snippetEnd < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    static StringBuilder highlightingSnippet(List<Match> allMatches, String snippetRaw, StringBuilder snippet) {
+        AtomicInteger lastPos = new AtomicInteger(0);
+        allMatches.forEach(match -> {
+            snippet.append(snippetRaw, lastPos.get(), match.start());
+            snippet.append("<b>")
+                    .append(snippetRaw, match.start(), match.end())
+                    .append("</b>");
+            lastPos.set(match.end());
+        });
+        return snippet.append(snippetRaw.substring(lastPos.get()));
+    }
+
+    static List<String> findAllMatchingWords(Set<String> sortedLemmas, List<String> pageWords, List<String> queryWords) {
+        queryWords.forEach(word -> {
+            if (word.length() > 3) {
+                sortedLemmas.add(word);
+            }
+        });
+        return pageWords.stream()
+                .filter(word -> sortedLemmas.stream()
+                        .anyMatch(lemma -> word.equalsIgnoreCase(lemma) || word.toLowerCase().contains(lemma.toLowerCase())))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    static String findMatchingWord(List<String> matchingWords, List<String> pageWords) {
+        return pageWords.stream()
+                .filter(pageWord -> matchingWords.stream()
+                        .anyMatch(matchingWord -> pageWord.toLowerCase().startsWith(matchingWord.toLowerCase())))
+                .findFirst()
+                .orElse("");
+    }
+}
@@ -0,0 +1,142 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.dto.search.PageSummary;
+import searchengine.repositories.PageRepository;
+import searchengine.utils.ContentCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение страниц выдачи через контекст {@link SearchBenchmark} на H2: прежние строки page с HTML внутри
+ * (таблица legacy_page в схеме до переноса в page_content) против запроса {@code findSummariesByIds}.
+ * Каждый вызов читает {@code pages} страниц подряд; прочитанные строки и байты текстовых колонок
+ * выводятся счётчиками {@link ReadCounters}. Отдельно — цена сжатия и распаковки страницы корпуса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageContentBenchmark {
+
+    @Param({"20"})
+    private int pages;
+
+    @Param({"50"})
+    private int copies;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private PageRepository pageRepository;
+    private List<Integer> pageIds;
+    private String legacyQuery;
+    private int nextPage;
+    private String html;
+    private byte[] compressed;
+
+    /**
+     * Счётчики на итерацию: строки, байты текстовых колонок в UTF-8 и число выборок.
+     * Байты на один поиск — {@code bytes / searches}.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ReadCounters {
+        public long rows;
+        public long bytes;
+        public long searches;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            bytes = 0;
+            searches = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = SearchBenchmark.startContext("page-content-benchmark");
+        SearchBenchmark.index(context, copies);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        pageRepository = context.getBean(PageRepository.class);
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS legacy_page");
+        jdbcTemplate.execute("CREATE TABLE legacy_page (id INT PRIMARY KEY, site_id INT NOT NULL," +
+                " path VARCHAR(255) NOT NULL, code INT NOT NULL, content MEDIUMTEXT NOT NULL," +
+                " title VARCHAR(512), text MEDIUMTEXT)");
+        List<Object[]> legacyRows = new ArrayList<>();
+        jdbcTemplate.query("SELECT p.id, p.site_id, p.path, p.code, c.content, p.title, p.text" +
+                " FROM page p JOIN page_content c ON c.page_id = p.id", rs -> {
+            legacyRows.add(new Object[]{rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getInt(4),
+                    ContentCodec.decompress(rs.getBytes(5)), rs.getString(6), rs.getString(7)});
+        });
+        jdbcTemplate.batchUpdate("INSERT INTO legacy_page (id, site_id, path, code, content, title, text)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?)", legacyRows);
+
+        pageIds = jdbcTemplate.queryForList("SELECT id FROM page ORDER BY id", Integer.class);
+        legacyQuery = "SELECT p.id, p.code, p.path, p.content, p.title, p.text, s.url, s.name" +
+                " FROM legacy_page p JOIN site s ON s.id = p.site_id WHERE p.id IN ("
+                + String.join(", ", Collections.nCopies(pages, "?")) + ")";
+        html = (String) legacyRows.get(0)[4];
+        compressed = ContentCodec.compress(html);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int legacyRows(ReadCounters counters) {
+        List<Integer> ids = nextPageIds();
+        jdbcTemplate.query(legacyQuery, (ResultSet rs) -> {
+            counters.rows++;
+            for (int column = 3; column <= 8; column++) {
+                counters.bytes += utf8Length(rs.getString(column));
+            }
+        }, ids.toArray());
+        counters.searches++;
+        return ids.size();
+    }
+
+    @Benchmark
+    public List<PageSummary> summaryRows(ReadCounters counters) {
+        List<PageSummary> summaries = pageRepository.findSummariesByIds(nextPageIds());
+        for (PageSummary summary : summaries) {
+            counters.rows++;
+            counters.bytes += utf8Length(summary.path()) + utf8Length(summary.title())
+                    + utf8Length(summary.text()) + utf8Length(summary.siteUrl()) + utf8Length(summary.siteName());
+        }
+        counters.searches++;
+        return summaries;
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return ContentCodec.compress(html);
+    }
+
+    @Benchmark
+    public String decompress() {
+        return ContentCodec.decompress(compressed);
+    }
+
+    private List<Integer> nextPageIds() {
+        int from = nextPage;
+        nextPage = (nextPage + pages) % (pageIds.size() - pages + 1);
+        return pageIds.subList(from, from + pages);
+    }
+
+    private static long utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
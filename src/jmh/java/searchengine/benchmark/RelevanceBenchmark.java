@@ -0,0 +1,94 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.service.search.RankedPage;
+import searchengine.utils.IntFloatMap;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Подсчёт релевантности и отбор страницы выдачи: прежний путь через кортежи {@code Object[]},
+ * {@code HashMap<Integer, Float>} и RankedPage на каждого кандидата против {@link IntFloatMap}.
+ * Выделение памяти на запрос видно с профилировщиком GC:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="RelevanceBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelevanceBenchmark {
+    private static final int TOP_K = 20;
+
+    @Param({"1000", "100000"})
+    private int candidates;
+
+    private int[] pageIds;
+    private float[] rankSums;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        pageIds = new int[candidates];
+        rankSums = new float[candidates];
+        int pageId = 0;
+        for (int i = 0; i < candidates; i++) {
+            pageId += 1 + random.nextInt(5);
+            pageIds[i] = pageId;
+            rankSums[i] = 1 + random.nextInt(500);
+        }
+    }
+
+    @Benchmark
+    public List<RankedPage> boxedHashMap() {
+        List<Object[]> tuples = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            tuples.add(new Object[]{pageIds[i], (double) rankSums[i]});
+        }
+        Map<Integer, Float> ranksByPageId = tuples.stream()
+                .collect(Collectors.toMap(
+                        tuple -> ((Number) tuple[0]).intValue(),
+                        tuple -> ((Number) tuple[1]).floatValue(),
+                        (existing, replacement) -> existing, HashMap::new));
+        float max = ranksByPageId.values().stream().max(Float::compare).orElse(1.0F);
+        ranksByPageId.replaceAll((pageId, rank) -> rank / max);
+
+        PriorityQueue<RankedPage> topPages = new PriorityQueue<>(RankedPage.BY_RELEVANCE);
+        ranksByPageId.forEach((pageId, relevance) -> {
+            RankedPage rankedPage = new RankedPage(pageId, relevance);
+            if (topPages.size() < TOP_K) {
+                topPages.add(rankedPage);
+            } else if (RankedPage.BY_RELEVANCE.compare(rankedPage, topPages.peek()) > 0) {
+                topPages.poll();
+                topPages.add(rankedPage);
+            }
+        });
+        return new ArrayList<>(topPages);
+    }
+
+    @Benchmark
+    public List<RankedPage> primitiveMap() {
+        IntFloatMap ranksByPageId = new IntFloatMap(candidates);
+        for (int i = 0; i < candidates; i++) {
+            ranksByPageId.put(pageIds[i], rankSums[i]);
+        }
+        ranksByPageId.divideAll(ranksByPageId.max());
+
+        PriorityQueue<RankedPage> topPages = new PriorityQueue<>(RankedPage.BY_RELEVANCE);
+        ranksByPageId.forEach((pageId, relevance) -> {
+            if (topPages.size() < TOP_K) {
+                topPages.add(new RankedPage(pageId, relevance));
+                return;
+            }
+            RankedPage weakest = topPages.peek();
+            if (relevance > weakest.relevance() || (relevance == weakest.relevance() && pageId < weakest.pageId())) {
+                topPages.poll();
+                topPages.add(new RankedPage(pageId, relevance));
+            }
+        });
+        return new ArrayList<>(topPages);
+    }
+}
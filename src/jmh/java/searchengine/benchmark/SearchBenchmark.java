@@ -0,0 +1,143 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+import searchengine.config.Site;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.PageModel;
+import searchengine.model.SiteModel;
+import searchengine.model.Status;
+import searchengine.service.search.SearchServiceImpl;
+import searchengine.utils.FinderLemma;
+import searchengine.utils.LemmaCache;
+import searchengine.utils.PageManager;
+import searchengine.utils.SitePersistenceService;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск целиком — от лемматизации запроса до сниппетов — через контекст Spring на H2 в режиме MySQL.
+ * Корпус {@link Corpus} индексируется {@code copies} раз обычными PageManager и FinderLemma.
+ * При {@code cacheSize = 0} каждый запрос ранжируется заново, иначе повторы обслуживает кэш результатов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"sum-rank", "bm25"})
+    private String scorer;
+
+    @Param({"0", "1000"})
+    private int cacheSize;
+
+    @Param({"50"})
+    private int copies;
+
+    private ConfigurableApplicationContext context;
+    private SearchServiceImpl searchService;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = startContext("search-benchmark",
+                "--indexing-settings.search.scorer=" + scorer,
+                "--indexing-settings.search.cache-size=" + cacheSize);
+        searchService = context.getBean(SearchServiceImpl.class);
+        index(context, copies);
+    }
+
+    /**
+     * Контекст приложения без веб-сервера на H2 в памяти; {@code args} дополняют настройки базы.
+     */
+    static ConfigurableApplicationContext startContext(String database, String... args) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+                        + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        arguments.addAll(List.of(args));
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(String[]::new));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SearchResponse searchAllSites() {
+        return searchService.search(nextQuery(), null, 0, 20);
+    }
+
+    @Benchmark
+    public SearchResponse searchOneSite() {
+        String query = nextQuery();
+        String site = query.chars().anyMatch(c -> Character.UnicodeBlock.of(c) == Character.UnicodeBlock.CYRILLIC)
+                ? Corpus.RU_SITE : Corpus.EN_SITE;
+        return searchService.search(query, site, 0, 20);
+    }
+
+    @Benchmark
+    public SearchResponse searchSecondPage() {
+        return searchService.search(nextQuery(), null, 20, 20);
+    }
+
+    private String nextQuery() {
+        List<String> queries = Corpus.QUERIES;
+        nextQuery = (nextQuery + 1) % queries.size();
+        return queries.get(nextQuery);
+    }
+
+    /**
+     * Индексирует {@code copies} копий корпуса обычными PageManager и FinderLemma.
+     */
+    static void index(ConfigurableApplicationContext context, int copies) throws Exception {
+        SitePersistenceService sitePersistenceService = context.getBean(SitePersistenceService.class);
+        PageManager pageManager = context.getBean(PageManager.class);
+        FinderLemma finderLemma = context.getBean(FinderLemma.class);
+        LemmaCache lemmaCache = context.getBean(LemmaCache.class);
+
+        Map<String, SiteModel> sites = new LinkedHashMap<>();
+        for (String siteUrl : List.of(Corpus.RU_SITE, Corpus.EN_SITE)) {
+            Site site = new Site();
+            site.setUrl(siteUrl);
+            site.setName(siteUrl);
+            SiteModel siteModel = new SiteModel();
+            sitePersistenceService.saveSiteModel(site, siteModel);
+            sites.put(siteUrl, siteModel);
+        }
+        List<Corpus.Page> pages = Corpus.load();
+        for (int copy = 0; copy < copies; copy++) {
+            for (Corpus.Page page : pages) {
+                String url = page.url(copy);
+                PageModel pageModel = pageManager.createPageModel(200, Jsoup.parse(page.html(), url), url,
+                        sites.get(page.siteUrl()));
+                finderLemma.processLemma(pageModel);
+            }
+        }
+        for (SiteModel siteModel : sites.values()) {
+            lemmaCache.flush(siteModel.getId());
+            pageManager.updateSiteStatus(siteModel, Status.INDEXED, null);
+        }
+    }
+}
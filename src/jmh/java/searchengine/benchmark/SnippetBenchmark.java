@@ -0,0 +1,70 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.service.search.QueryHighlighter;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение скомпилированного QueryHighlighter с прежним построением сниппета:
+ * одна операция — сниппеты для страницы выдачи из {@code pages} страниц по одному запросу.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnippetBenchmark {
+    private static final String[] VOCABULARY = {"магазин", "доставка", "цена", "товар", "каталог", "скидка",
+            "гарантия", "покупатель", "заказ", "laptop", "price", "delivery", "store", "review", "model"};
+
+    @Param({"2000", "20000"})
+    private int textLength;
+
+    @Param({"20"})
+    private int pages;
+
+    private final String query = "купить ноутбук недорого";
+    private final Set<String> lemmas = new LinkedHashSet<>(List.of("куп", "ноутбук", "недорог"));
+    private List<String> texts;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        texts = new ArrayList<>(pages);
+        for (int page = 0; page < pages; page++) {
+            StringBuilder text = new StringBuilder(textLength + 16);
+            while (text.length() < textLength) {
+                int next = random.nextInt(100);
+                String word = next < 2 ? "ноутбуки" : next < 3 ? "купить" : next < 4 ? "недорогой"
+                        : VOCABULARY[random.nextInt(VOCABULARY.length)];
+                text.append(word).append(' ');
+            }
+            texts.add(text.toString().trim());
+        }
+    }
+
+    @Benchmark
+    public void compiledHighlighter(Blackhole blackhole) {
+        Set<String> terms = new HashSet<>(lemmas);
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 3) {
+                terms.add(word);
+            }
+        }
+        QueryHighlighter highlighter = QueryHighlighter.compile(terms);
+        for (String text : texts) {
+            blackhole.consume(highlighter.snippet(text));
+        }
+    }
+
+    @Benchmark
+    public void legacySnippet(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(LegacySnippet.buildSnippet(text, query, new LinkedHashSet<>(lemmas)));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.batch")
+public class BatchSettings {
+    private int lemmaBatchSize = 500;
+    private int indexBatchSize = 1000;
+    private long flushIntervalMs = 5000;
+    private int deleteChunkSize = 5000;
+}
@@ -0,0 +1,28 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.crawler")
+public class CrawlerSettings {
+    private boolean incremental = false;
+    private String fetchMode = "platform";
+    private int fetchers = Runtime.getRuntime().availableProcessors();
+    private int maxInFlight = 64;
+    private int maxInFlightPerSite = 8;
+    private String userAgent = "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:92.0) Gecko/20100101 Firefox/92.0";
+    private String referrer = "https://www.google.com";
+    private long politenessDelayMs = 500;
+    private int maxPages = 100_000;
+    private long progressIntervalMs = 10_000;
+    private int parsers = Runtime.getRuntime().availableProcessors();
+    private int lemmatizers = Runtime.getRuntime().availableProcessors();
+    private int writers = 1;
+    private int queueCapacity = 64;
+    private int writeBatchSize = 16;
+}
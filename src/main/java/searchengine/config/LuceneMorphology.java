@@ -4,8 +4,6 @@ import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.tartarus.snowball.ext.EnglishStemmer;
-import org.tartarus.snowball.ext.RussianStemmer;
 
 import java.io.IOException;
 
@@ -21,14 +19,4 @@ public class LuceneMorphology {
     EnglishLuceneMorphology luceneMorphologyEng() throws IOException {
         return new  EnglishLuceneMorphology();
     }
-
-    @Bean
-    RussianStemmer russianStemmer() {
-        return new RussianStemmer();
-    }
-
-    @Bean
-    EnglishStemmer englishStemmer() {
-        return new EnglishStemmer();
-    }
 }
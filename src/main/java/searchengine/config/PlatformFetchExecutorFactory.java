@@ -0,0 +1,52 @@
+package searchengine.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import searchengine.utils.FetchExecutorFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Загрузка страниц в пуле платформенных потоков. Используется и при {@code fetch-mode: virtual},
+ * если приложение собрано без профиля jdk21 и виртуальной реализации нет.
+ */
+@Slf4j
+@Component
+@Conditional(PlatformFetchExecutorFactory.PlatformFetchCondition.class)
+public class PlatformFetchExecutorFactory implements FetchExecutorFactory {
+
+    public PlatformFetchExecutorFactory(CrawlerSettings crawlerSettings) {
+        if ("virtual".equals(crawlerSettings.getFetchMode())) {
+            log.warn("fetch-mode: virtual требует сборки на JDK 21 с профилем jdk21, загрузка идёт на пуле потоков");
+        }
+    }
+
+    @Override
+    public ExecutorService create(String siteUrl, int fetchers) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("crawl-fetch-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(Math.max(1, fetchers), threadFactory);
+    }
+
+    static class PlatformFetchCondition extends AnyNestedCondition {
+
+        PlatformFetchCondition() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnProperty(prefix = "indexing-settings.crawler", name = "fetch-mode", havingValue = "platform",
+                matchIfMissing = true)
+        static class PlatformRequested {
+        }
+
+        @ConditionalOnMissingClass("searchengine.config.VirtualFetchExecutorFactory")
+        static class VirtualUnavailable {
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package searchengine.config;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.utils.PageFetcher;
+import searchengine.utils.SearchResultCache;
+import searchengine.utils.TextAnalyzer;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Метрики кэшей и загрузчика, которые считаются в самих компонентах и снимаются при опросе реестра.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SearchEngineMetrics implements MeterBinder {
+    private final TextAnalyzer textAnalyzer;
+    private final SearchResultCache searchResultCache;
+    private final PageFetcher pageFetcher;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCache(registry, "words", textAnalyzer::getWordCacheStats, textAnalyzer::getWordCacheSize);
+        bindCache(registry, "search-results", searchResultCache::getStats, searchResultCache::getSize);
+        Gauge.builder("crawl.fetch.in.flight", pageFetcher, PageFetcher::getInFlight)
+                .description("HTTP-запросы, выполняемые в данный момент")
+                .register(registry);
+    }
+
+    private static void bindCache(MeterRegistry registry, String cache, Supplier<CacheStats> stats,
+                                  LongSupplier size) {
+        FunctionCounter.builder("cache.gets", stats, source -> source.get().hitCount())
+                .tags("cache", cache, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", stats, source -> source.get().missCount())
+                .tags("cache", cache, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", stats, source -> source.get().evictionCount())
+                .tag("cache", cache)
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", stats, source -> source.get().hitRate())
+                .tag("cache", cache)
+                .register(registry);
+        Gauge.builder("cache.size", size, LongSupplier::getAsLong)
+                .tag("cache", cache)
+                .register(registry);
+    }
+}
@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.search")
+public class SearchSettings {
+    private String scorer = "sum-rank";
+    private float frequencyThreshold = 0.8F;
+    private float bm25K1 = 1.2F;
+    private float bm25B = 0.75F;
+    private long cacheSize = 1_000;
+    private int cacheDepth = 200;
+    private long cacheTtlSeconds = 600;
+    private int fanOutThreads = Runtime.getRuntime().availableProcessors();
+    private long timeoutMs = 2_000;
+}
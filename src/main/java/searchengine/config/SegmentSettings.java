@@ -0,0 +1,16 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.segment")
+public class SegmentSettings {
+    private boolean enabled = false;
+    private String directory = "data/segments";
+    private int buildChunkRows = 200_000;
+}
@@ -1,15 +1,19 @@
 package searchengine.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import searchengine.dto.search.SearchResponse;
 import searchengine.service.search.SearchService;
+import searchengine.service.search.SearchStream;
 
 import java.io.IOException;
 
@@ -18,6 +22,7 @@ import java.io.IOException;
 @RequestMapping("/api")
 public class SearchController {
     private final SearchService<SearchResponse> searchService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/search")
     public ResponseEntity<SearchResponse> search(@RequestParam(required = false) String query,
@@ -27,4 +32,22 @@ public class SearchController {
         SearchResponse response = searchService.search(query, site, offset, limit);
         return ResponseEntity.status(HttpStatus.OK).body(response);
     }
+
+    /**
+     * Та же выдача в формате NDJSON: строка ranking со страницами, затем по строке snippet на каждую страницу.
+     * Ошибки запроса возникают до начала ответа и возвращаются как в /search.
+     */
+    @GetMapping("/search/stream")
+    public ResponseEntity<StreamingResponseBody> searchStream(@RequestParam(required = false) String query,
+                                                              @RequestParam(required = false) String site,
+                                                              @RequestParam(defaultValue = "0") int offset,
+                                                              @RequestParam(defaultValue = "20") int limit) {
+        SearchStream stream = searchService.stream(query, site, offset, limit);
+        StreamingResponseBody body = outputStream -> stream.writeTo(event -> {
+            outputStream.write(objectMapper.writeValueAsBytes(event));
+            outputStream.write('\n');
+            outputStream.flush();
+        });
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
 }
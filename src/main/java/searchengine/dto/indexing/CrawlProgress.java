@@ -0,0 +1,4 @@
+package searchengine.dto.indexing;
+
+public record CrawlProgress(long processedPages, int pendingPages) {
+}
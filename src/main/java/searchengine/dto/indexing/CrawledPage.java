@@ -0,0 +1,16 @@
+package searchengine.dto.indexing;
+
+import java.util.Map;
+
+/**
+ * Загруженная и разобранная страница на пути от разбора к записи.
+ * {@code pageId} задан, если страница уже есть в индексе и её нужно обновить, а не создать.
+ */
+public record CrawledPage(String url, int code, String content, String title, String text,
+                          String etag, String lastModified, String contentHash, Integer pageId,
+                          Map<String, Integer> lemmaCounts) {
+
+    public CrawledPage withLemmaCounts(Map<String, Integer> lemmaCounts) {
+        return new CrawledPage(url, code, content, title, text, etag, lastModified, contentHash, pageId, lemmaCounts);
+    }
+}
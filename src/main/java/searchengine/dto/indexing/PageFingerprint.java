@@ -0,0 +1,4 @@
+package searchengine.dto.indexing;
+
+public record PageFingerprint(int id, String path, String etag, String lastModified, String contentHash) {
+}
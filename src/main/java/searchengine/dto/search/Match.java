@@ -1,4 +0,0 @@
-package searchengine.dto.search;
-
-public record Match(int start, int end) {
-}
@@ -2,5 +2,10 @@ package searchengine.dto.search;
 
 import java.util.List;
 
-public record SearchResponse(boolean result, int count, List<SearchResult> data) {
+/**
+ * count — число найденных страниц без скрытых (без заголовка или без фрагмента с запросом), замеченных
+ * при подборе участка выдачи; offset и limit отсчитываются только по показываемым страницам.
+ * partial — часть сайтов не ответила за отведённое время, и их страниц в выдаче нет.
+ */
+public record SearchResponse(boolean result, int count, List<SearchResult> data, boolean partial) {
 }
@@ -0,0 +1,22 @@
+package searchengine.dto.search;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Строка потоковой выдачи. ranking — найденные страницы в порядке релевантности без сниппетов,
+ * snippet — сниппет страницы с номером position в этом списке. Состав страниц тот же, что у /search.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SearchStreamEvent(String type, Integer count, Boolean partial, List<SearchResult> data,
+                                Integer position, String snippet) {
+
+    public static SearchStreamEvent ranking(int count, boolean partial, List<SearchResult> data) {
+        return new SearchStreamEvent("ranking", count, partial, data, null, null);
+    }
+
+    public static SearchStreamEvent snippet(int position, String snippet) {
+        return new SearchStreamEvent("snippet", null, null, null, position, snippet);
+    }
+}
@@ -0,0 +1,20 @@
+package searchengine.model;
+
+import searchengine.utils.ContentCodec;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(String content) {
+        return ContentCodec.compress(content);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] compressed) {
+        return ContentCodec.decompress(compressed);
+    }
+}
@@ -0,0 +1,27 @@
+package searchengine.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Исходный HTML страницы в сжатом виде. Вынесен из page, чтобы выборки страниц его не читали;
+ * загружается только по id страницы, когда он действительно нужен.
+ */
+@Entity
+@Getter
+@Setter
+@ToString(onlyExplicitlyIncluded = true)
+@Table(name = "page_content")
+public class PageContentModel {
+
+    @Id
+    @ToString.Include
+    @Column(name = "page_id")
+    private int pageId;
+
+    @NonNull
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "content", nullable = false, columnDefinition = "LONGBLOB")
+    private String content;
+}
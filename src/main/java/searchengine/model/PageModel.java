@@ -8,13 +8,14 @@ import javax.persistence.*;
 @Getter
 @Setter
 @ToString
-@EqualsAndHashCode
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Table(name = "page", indexes = {
         @Index(name = "idx_path", columnList = "path")},
         uniqueConstraints = {@UniqueConstraint(columnNames = {"path", "site_id"})})
 public class PageModel {
 
     @Id
+    @EqualsAndHashCode.Include
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
 
@@ -31,7 +32,19 @@ public class PageModel {
     @Column(name = "code", nullable = false)
     private int code;
 
-    @NonNull
-    @Column(name = "content", nullable = false, columnDefinition = "MEDIUMTEXT")
-    private String content;
+    @Column(name = "title", columnDefinition = "VARCHAR(512)")
+    private String title;
+
+    @ToString.Exclude
+    @Column(name = "text", columnDefinition = "MEDIUMTEXT")
+    private String text;
+
+    @Column(name = "etag", columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
 }
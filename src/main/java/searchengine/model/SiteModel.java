@@ -40,4 +40,10 @@ public class SiteModel {
     @NonNull
     @Column(name = "name", nullable = false, columnDefinition = "VARCHAR(255)")
     private String name;
+
+    @Column(name = "active", nullable = false, columnDefinition = "BOOLEAN NOT NULL DEFAULT TRUE")
+    private boolean active = true;
+
+    @Column(name = "generation", nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int generation;
 }
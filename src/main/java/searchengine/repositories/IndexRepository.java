@@ -1,15 +1,14 @@
 package searchengine.repositories;
 
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.IndexModel;
-import searchengine.model.LemmaModel;
 import searchengine.model.PageModel;
 
 import java.util.List;
-import java.util.Set;
 
 public interface IndexRepository extends JpaRepository<IndexModel, Integer> {
     List<IndexModel> findByPage(PageModel pageModel);
@@ -23,25 +22,15 @@ public interface IndexRepository extends JpaRepository<IndexModel, Integer> {
     @Query("SELECT COUNT(i) > 0 FROM IndexModel i WHERE i.page = :page AND i.lemma.lemma = :lemma AND i.page.site.url = :site")
     boolean existsByPageAndLemma(@Param("page") PageModel page, @Param("lemma") String lemma, @Param("site") String site);
 
-    void deleteByPage(PageModel pageModel);
-
-    Integer countByLemma(LemmaModel lemmaModel);
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM `index` WHERE page_id IN " +
+            "(SELECT id FROM page WHERE site_id = :siteId AND id BETWEEN :fromId AND :toId)", nativeQuery = true)
+    int deleteBySiteIdAndPageIdRange(@Param("siteId") int siteId, @Param("fromId") int fromId,
+                                     @Param("toId") int toId);
 
     @Query("SELECT i.page FROM IndexModel i WHERE i.lemma.lemma = :lemma")
     List<PageModel> findPagesByLemma(@Param("lemma") String lemma);
 
-    @Query("SELECT i.page.id, SUM(i.rank) FROM IndexModel i WHERE i.page.id IN :pageIds GROUP BY i.page.id")
-    List<Object[]> sumRankByPageIds(@Param("pageIds") List<Integer> pageIds);
-
-    @Query("SELECT DISTINCT i.page.id from IndexModel i " +
-            "WHERE i.lemma.lemma in :lemmas " +
-            "and (:siteId is null or i.page.site.id = :siteId) " +
-            "order by sum(i.rank) desc")
-    List<Integer> findPageIdsByLemmas(@Param("lemmas") Set<String> lemmas, @Param("siteId") Integer siteId, Pageable pageable);
-
-    @Query("select count (distinct i.page.id) from IndexModel  i " +
-            "where i.lemma.lemma in :lemmas " +
-            "and (:siteId is null or i.page.site.id = :sideId)")
-    long countPagesByLemmas(@Param("lemmas") Set<String> lemmas, @Param("siteId") Integer siteId);
 
 }
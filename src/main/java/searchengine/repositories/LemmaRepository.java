@@ -1,6 +1,10 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.LemmaModel;
 import searchengine.model.SiteModel;
 
@@ -9,9 +13,10 @@ import java.util.Optional;
 public interface LemmaRepository extends JpaRepository<LemmaModel, Integer> {
    Optional<LemmaModel> findByLemmaAndSiteId(String lemma, int siteId);
 
-   void deleteBySite(SiteModel siteModel);
-
-   Integer countBySiteId(int siteId);
+   @Modifying
+   @Transactional
+   @Query(value = "DELETE FROM lemma WHERE site_id = :siteId LIMIT :limit", nativeQuery = true)
+   int deleteChunkBySiteId(@Param("siteId") int siteId, @Param("limit") int limit);
 
    long countByLemma(String lemma);
 
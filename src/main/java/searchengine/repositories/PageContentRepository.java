@@ -0,0 +1,33 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.PageContentModel;
+
+public interface PageContentRepository extends JpaRepository<PageContentModel, Integer> {
+
+    @Query("SELECT c.content FROM PageContentModel c WHERE c.pageId = :pageId")
+    String findContentByPageId(@Param("pageId") int pageId);
+
+    /**
+     * Вставка или замена без предварительного SELECT; content передаётся уже сжатым.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO page_content (page_id, content) VALUES (:pageId, :content) " +
+            "ON DUPLICATE KEY UPDATE content = VALUES(content)", nativeQuery = true)
+    void upsert(@Param("pageId") int pageId, @Param("content") byte[] content);
+
+    @Modifying
+    @Query(value = "DELETE FROM page_content WHERE page_id = :pageId", nativeQuery = true)
+    int deleteByPageId(@Param("pageId") int pageId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM page_content WHERE page_id IN " +
+            "(SELECT id FROM page WHERE site_id = :siteId AND id BETWEEN :fromId AND :toId)", nativeQuery = true)
+    int deleteBySiteIdAndPageIdRange(@Param("siteId") int siteId, @Param("fromId") int fromId,
+                                     @Param("toId") int toId);
+}
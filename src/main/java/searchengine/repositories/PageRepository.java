@@ -1,11 +1,16 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.PageFingerprint;
+import searchengine.dto.search.PageSummary;
 import searchengine.model.PageModel;
 import searchengine.model.SiteModel;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -16,10 +21,28 @@ public interface PageRepository extends JpaRepository<PageModel, Integer> {
     int countBySiteUrl(@Param("url") String url);
     PageModel findByPathAndSite(String path, SiteModel siteModel);
 
-    void deleteBySite(SiteModel site);
+    @Query("SELECT MIN(p.id) FROM PageModel p WHERE p.site.id = :siteId")
+    Integer findMinIdBySiteId(@Param("siteId") int siteId);
 
-    List<PageModel> findBySite(SiteModel site);
+    @Query("SELECT MAX(p.id) FROM PageModel p WHERE p.site.id = :siteId")
+    Integer findMaxIdBySiteId(@Param("siteId") int siteId);
 
-    Integer countBySiteId(int siteId);
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM page WHERE site_id = :siteId AND id BETWEEN :fromId AND :toId", nativeQuery = true)
+    int deleteBySiteIdAndIdRange(@Param("siteId") int siteId, @Param("fromId") int fromId, @Param("toId") int toId);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT new searchengine.dto.search.PageSummary(p.id, p.path, p.title, p.text, s.url, s.name) " +
+            "FROM PageModel p JOIN p.site s WHERE p.id IN :ids")
+    List<PageSummary> findSummariesByIds(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT new searchengine.dto.indexing.PageFingerprint(p.id, p.path, p.etag, p.lastModified, p.contentHash) " +
+            "FROM PageModel p WHERE p.site.id = :siteId")
+    List<PageFingerprint> findFingerprintsBySiteId(@Param("siteId") int siteId);
+
+    @Modifying
+    @Query("UPDATE PageModel p SET p.etag = :etag, p.lastModified = :lastModified WHERE p.id = :id")
+    void updateValidators(@Param("id") int id, @Param("etag") String etag, @Param("lastModified") String lastModified);
 
 }
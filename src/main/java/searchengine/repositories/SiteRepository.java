@@ -3,6 +3,12 @@ package searchengine.repositories;
 import org.springframework.data.jpa.repository.JpaRepository;
 import searchengine.model.SiteModel;
 
+import java.util.List;
+
 public interface SiteRepository extends JpaRepository<SiteModel, Integer> {
-    SiteModel findByUrl(String url);
+    SiteModel findByUrlAndActiveTrue(String url);
+
+    List<SiteModel> findByUrlAndActiveFalse(String url);
+
+    List<SiteModel> findByActiveTrue();
 }
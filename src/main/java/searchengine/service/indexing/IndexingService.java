@@ -1,9 +1,18 @@
 package searchengine.service.indexing;
 
+import searchengine.dto.indexing.CrawlProgress;
 import searchengine.dto.indexing.UrlPage;
 
+import java.util.Map;
+
 public interface IndexingService<T> {
     T startIndexing();
     T stopIndexing();
     T indexPage(UrlPage url);
+    boolean isIndexing();
+
+    /**
+     * Прогресс обходов, идущих в данный момент, по адресу сайта.
+     */
+    Map<String, CrawlProgress> getCrawlProgress();
 }
@@ -1,15 +1,19 @@
 package searchengine.service.indexing;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
+import org.jsoup.Connection;
 import org.jsoup.nodes.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.dto.indexing.CrawlProgress;
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.dto.indexing.PageFingerprint;
 import searchengine.dto.indexing.UrlPage;
 import searchengine.exceptions.IndexingException;
 import searchengine.exceptions.StartIndexingException;
@@ -17,20 +21,33 @@ import searchengine.exceptions.StopIndexingException;
 import searchengine.model.*;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.utils.CrawlPipeline;
+import searchengine.utils.FetchExecutorFactory;
 import searchengine.utils.FinderLemma;
+import searchengine.utils.LemmaCache;
+import searchengine.utils.PageFetcher;
 import searchengine.utils.PageManager;
-import searchengine.utils.PageIndexingTask;
+import searchengine.utils.SearchResultCache;
+import searchengine.utils.SegmentIndexStore;
 import searchengine.utils.SitePersistenceService;
+import searchengine.utils.TextAnalyzer;
 
 import java.io.IOException;
 import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -42,24 +59,44 @@ public class IndexingServiceImpl implements IndexingService<IndexingResponse> {
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
     private final SitePersistenceService siteDataService;
-    private final AtomicBoolean isIndexing = new AtomicBoolean(false);
+    // Запрос остановки для задач; индексация идёт, пока есть незавершённые сайты
+    private final AtomicBoolean stopRequested = new AtomicBoolean(false);
+    private final AtomicInteger runningSites = new AtomicInteger();
+    // Сайты, обход которых ещё не завершён: в них не пишет переиндексация отдельной страницы
+    private final Set<String> indexingSites = ConcurrentHashMap.newKeySet();
+    private final Map<String, CrawlPipeline> activeCrawls = new ConcurrentHashMap<>();
     private final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final ExecutorService cleanupExecutor = Executors.newSingleThreadExecutor();
     private final PageManager pageService;
     private final FinderLemma finderLemmaService;
-    private final String userAgent = "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:92.0) Gecko/20100101 Firefox/92.0";
-    private final String referrer = "https://www.google.com";
+    private final LemmaCache lemmaCache;
+    private final TextAnalyzer textAnalyzer;
+    private final CrawlerSettings crawlerSettings;
+    private final PageFetcher pageFetcher;
+    private final FetchExecutorFactory fetchExecutorFactory;
+    private final SegmentIndexStore segmentIndexStore;
+    private final SearchResultCache searchResultCache;
+    private final MeterRegistry meterRegistry;
 
     @Transactional
     @Override
     public IndexingResponse startIndexing() {
-        log.info("StartIndexing = {}", isIndexing);
-        if (isIndexing.get()) {
+        List<Site> sites = sitesList.getSites();
+        // Пока не завершены задачи прошлого запуска, включая остановленные, новый запуск не принимается
+        if (!runningSites.compareAndSet(0, sites.size())) {
             throw new StartIndexingException("Индексация уже запущена");
         }
-        isIndexing.set(true);
-        log.info("StartIndexing = {}", isIndexing);
-        List<Site> sites = sitesList.getSites();
-        sites.forEach(site -> executorService.submit(() -> indexSite(site)));
+        stopRequested.set(false);
+        log.info("Запуск индексации сайтов: {}", sites.size());
+        sites.forEach(site -> indexingSites.add(site.getUrl()));
+        sites.forEach(site -> executorService.submit(() -> {
+            try {
+                indexSite(site);
+            } finally {
+                indexingSites.remove(site.getUrl());
+                runningSites.decrementAndGet();
+            }
+        }));
 
         return createSuccessResponse();
 
@@ -68,13 +105,26 @@ public class IndexingServiceImpl implements IndexingService<IndexingResponse> {
     @Transactional
     @Override
     public IndexingResponse stopIndexing() {
-        if (isIndexing.get()) {
-            isIndexing.set(false);
+        if (runningSites.get() > 0) {
+            stopRequested.set(true);
             return createSuccessResponse();
         }
         throw new StopIndexingException("Индексация не запущена");
     }
 
+    @Override
+    public boolean isIndexing() {
+        return runningSites.get() > 0;
+    }
+
+    @Override
+    public Map<String, CrawlProgress> getCrawlProgress() {
+        Map<String, CrawlProgress> progress = new HashMap<>();
+        activeCrawls.forEach((url, crawlPipeline) -> progress.put(url, new CrawlProgress(
+                crawlPipeline.getCrawlFrontier().getProcessedPages(), crawlPipeline.getCrawlFrontier().getPendingPages())));
+        return progress;
+    }
+
     @Transactional
     @Override
     public IndexingResponse indexPage(UrlPage url) {
@@ -87,6 +137,10 @@ public class IndexingServiceImpl implements IndexingService<IndexingResponse> {
 
         if (matchingSite.isPresent()) {
             Site site = matchingSite.get();
+            // Обход пишет в строящееся поколение и потом подменит им действующее, обновление страницы потерялось бы
+            if (indexingSites.contains(site.getUrl())) {
+                throw new StartIndexingException("Сайт " + site.getUrl() + " сейчас индексируется");
+            }
             try {
                 URL linkUrl = new URL(url.url());
                 String path = linkUrl.getPath();
@@ -96,15 +150,18 @@ public class IndexingServiceImpl implements IndexingService<IndexingResponse> {
                     throw new IndexingException(error);
                 }
 
-                SiteModel siteModel = siteRepository.findByUrl(site.getUrl());
+                SiteModel siteModel = siteRepository.findByUrlAndActiveTrue(site.getUrl());
                 PageModel pageModel = pageRepository.findByPathAndSite(path, siteModel);
 
                 if (siteModel == null) {
                     siteModel = new SiteModel();
                     siteDataService.saveSiteModel(site, siteModel);
                 }
+                segmentIndexStore.invalidate(siteModel.getId());
+                searchResultCache.invalidate(siteModel.getId());
                 siteDataService.deletePage(pageModel);
-                processIndexPage(siteModel, url.url(), userAgent, referrer);
+                processIndexPage(siteModel, url.url());
+                lemmaCache.flush(siteModel.getId());
                 pageService.updateSiteStatus(siteModel, Status.INDEXED, null);
                 log.info("Страница проиндексирована: {}", path);
 
@@ -113,6 +170,9 @@ public class IndexingServiceImpl implements IndexingService<IndexingResponse> {
             } catch (IOException e) {
                 log.info("Ошибка индексации страницы: {}", e.getMessage());
                 throw new IndexingException(error);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IndexingException(error);
             }
         }
         log.error("Page not found = {}", url);
@@ -121,62 +181,130 @@ public class IndexingServiceImpl implements IndexingService<IndexingResponse> {
 
     @Transactional
     public void indexSite(Site site) {
+        SiteModel generation = null;
         try {
-            if (!isIndexing.get()) {
-                log.info("IndexSite isIndexing value: {}", isIndexing.get());
+            if (stopRequested.get()) {
+                log.info("Индексация остановлена до начала обхода сайта {}", site.getUrl());
                 return;
             }
-            SiteModel siteModel = siteRepository.findByUrl(site.getUrl());
-            if (siteModel != null) {
-                siteDataService.deleteData(siteModel);
+            siteRepository.findByUrlAndActiveFalse(site.getUrl()).forEach(siteDataService::deleteData);
+            SiteModel activeSite = siteRepository.findByUrlAndActiveTrue(site.getUrl());
+            Map<String, PageFingerprint> knownPages = Map.of();
+            if (activeSite != null && crawlerSettings.isIncremental()) {
+                // Сайт остаётся в поиске, пока обновляются изменившиеся страницы
+                generation = activeSite;
+                knownPages = pageRepository.findFingerprintsBySiteId(activeSite.getId()).stream()
+                        .collect(Collectors.toMap(PageFingerprint::path, Function.identity()));
+                pageService.updateSiteStatus(activeSite, Status.INDEXING, null);
+                segmentIndexStore.invalidate(activeSite.getId());
+                log.info("Повторный обход сайта {}: известно страниц {}", site.getUrl(), knownPages.size());
+            } else {
+                generation = new SiteModel();
+                if (activeSite != null) {
+                    // Новое поколение строится рядом с действующим и подменяет его только после обхода
+                    generation.setActive(false);
+                    generation.setGeneration(activeSite.getGeneration() + 1);
+                    pageService.updateSiteStatus(activeSite, Status.INDEXING, null);
+                }
+                siteDataService.saveSiteModel(site, generation);
             }
 
-            siteModel = new SiteModel();
-            siteDataService.saveSiteModel(site, siteModel);
-
-            pagesIndexing(siteModel, site.getUrl());
+            List<Integer> removedPageIds = pagesIndexing(generation, site.getUrl(), knownPages);
+            lemmaCache.flush(generation.getId());
+            removedPageIds.forEach(pageId -> pageRepository.findById(pageId).ifPresent(siteDataService::deletePage));
+            buildSegment(generation);
+            searchResultCache.invalidate(generation.getId());
+            log.info("Кэш словоформ: записей {}, доля попаданий {}, вытеснено {}", textAnalyzer.getWordCacheSize(),
+                    textAnalyzer.getWordCacheStats().hitRate(), textAnalyzer.getWordCacheStats().evictionCount());
 
-            if (isIndexing.get()) {
-                siteModel.setStatus(Status.INDEXED);
+            boolean shadowGeneration = activeSite != null && generation != activeSite;
+            if (!stopRequested.get() && shadowGeneration) {
+                siteDataService.promoteGeneration(generation, activeSite);
+                searchResultCache.invalidate(activeSite.getId());
+                discardGeneration(activeSite);
+            } else if (!stopRequested.get()) {
+                pageService.updateSiteStatus(generation, Status.INDEXED, null);
             } else {
-                siteModel.setStatus(Status.FAILED);
-                siteModel.setLastError("Индексация остановлена пользователем");
+                pageService.updateSiteStatus(shadowGeneration ? activeSite : generation, Status.FAILED,
+                        "Индексация остановлена пользователем");
+                if (shadowGeneration) {
+                    discardGeneration(generation);
+                }
             }
-            siteRepository.save(siteModel);
         } catch (Exception e) {
-            SiteModel siteModel = siteRepository.findByUrl(site.getUrl());
+            SiteModel siteModel = siteRepository.findByUrlAndActiveTrue(site.getUrl());
             log.info("siteException = {}", siteModel);
             if (siteModel != null) {
                 siteModel.setStatus(Status.FAILED);
+                siteModel.setStatusTime(LocalDateTime.now());
                 siteModel.setLastError("Ошибка: " + e.getMessage());
                 log.error("Error: = {}", e.getMessage());
                 siteRepository.save(siteModel);
             } else {
-                System.out.println("Сайт не найден по URL = " + site.getUrl());
-                log.error("Site not found URL = {}", e.getMessage());
+                log.error("Site not found URL = {}: {}", site.getUrl(), e.getMessage());
+            }
+            if (generation != null && !generation.isActive()) {
+                discardGeneration(generation);
             }
         }
     }
 
-    @Transactional
-    public void pagesIndexing(SiteModel siteModel, String url) {
-        if (!isIndexing.get())
+    private void buildSegment(SiteModel siteModel) {
+        if (stopRequested.get()) {
+            segmentIndexStore.invalidate(siteModel.getId());
             return;
-        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
         try {
-            pool.invoke(new PageIndexingTask(isIndexing, url, pageRepository,
-                    siteModel, pageService, userAgent, referrer, finderLemmaService));
+            segmentIndexStore.build(siteModel);
+        } catch (Exception e) {
+            log.warn("Сегмент сайта {} не построен, поиск пойдёт по MySQL: {}", siteModel.getUrl(), e.getMessage());
+            segmentIndexStore.invalidate(siteModel.getId());
+        }
+    }
+
+    /**
+     * Удаление поколения идёт в фоне, но считается частью индексации: до его окончания новый запуск
+     * не начнётся и не займётся теми же строками.
+     */
+    private void discardGeneration(SiteModel siteModel) {
+        runningSites.incrementAndGet();
+        cleanupExecutor.submit(() -> {
+            try {
+                siteDataService.deleteData(siteModel);
+            } catch (Exception e) {
+                log.error("Не удалось удалить поколение {} сайта {}: {}", siteModel.getGeneration(),
+                        siteModel.getUrl(), e.getMessage());
+            } finally {
+                runningSites.decrementAndGet();
+            }
+        });
+    }
+
+    @Transactional
+    public List<Integer> pagesIndexing(SiteModel siteModel, String url, Map<String, PageFingerprint> knownPages)
+            throws InterruptedException {
+        if (stopRequested.get())
+            return List.of();
+        CrawlPipeline crawlPipeline = new CrawlPipeline(siteModel, stopRequested, crawlerSettings, pageFetcher,
+                fetchExecutorFactory, pageService, finderLemmaService, textAnalyzer, knownPages, meterRegistry);
+        activeCrawls.put(siteModel.getUrl(), crawlPipeline);
+        try {
+            crawlPipeline.crawl(url);
         } finally {
-            pool.shutdown();
+            activeCrawls.remove(siteModel.getUrl(), crawlPipeline);
+        }
+        if (!knownPages.isEmpty()) {
+            log.info("Повторный обход сайта {}: без изменений {}, удалено {}", url,
+                    crawlPipeline.getUnchangedPages(), crawlPipeline.getUnvisitedPageIds().size());
         }
+        return crawlPipeline.getUnvisitedPageIds();
     }
 
     @Transactional
-    public void processIndexPage(SiteModel siteModel, String url, String userAgent, String referrer) throws IOException {
-        Document doc = Jsoup.connect(url).userAgent(userAgent).referrer(referrer).get();
-        int code = doc.connection().response().statusCode();
-        String content = doc.html();
-        PageModel pageModel = pageService.createPageModel(code, content, url, siteModel);
+    public void processIndexPage(SiteModel siteModel, String url) throws IOException, InterruptedException {
+        Connection.Response response = pageFetcher.fetch(url);
+        Document doc = response.parse();
+        PageModel pageModel = pageService.createPageModel(response.statusCode(), doc, url, siteModel);
         finderLemmaService.processLemma(pageModel);
     }
 
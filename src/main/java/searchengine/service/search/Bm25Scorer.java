@@ -0,0 +1,67 @@
+package searchengine.service.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.utils.CorpusStatistics;
+import searchengine.utils.IntFloatMap;
+
+import java.util.List;
+
+/**
+ * Okapi BM25. Частота леммы на странице берётся из уже прочитанных постингов, число страниц сайта,
+ * длины страниц и средняя длина — из {@link CorpusStatistics}, поэтому оценка не обращается к БД.
+ */
+@Component
+@ConditionalOnProperty(prefix = "indexing-settings.search", name = "scorer", havingValue = "bm25")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class Bm25Scorer implements RelevanceScorer {
+    private final CorpusStatistics corpusStatistics;
+    private final SearchSettings searchSettings;
+
+    @Override
+    public IntFloatMap score(int siteId, List<QueryTerm> terms, int[] pageIds) {
+        IntFloatMap scores = new IntFloatMap(pageIds.length);
+        if (pageIds.length == 0) {
+            return scores;
+        }
+        float k1 = searchSettings.getBm25K1();
+        float b = searchSettings.getBm25B();
+        int documentCount = Math.max(1, corpusStatistics.documentCount(siteId));
+        float averageLength = corpusStatistics.averageLength(siteId);
+        float[] lengths = corpusStatistics.pageLengths(siteId, pageIds);
+        float[] norms = new float[pageIds.length];
+        for (int i = 0; i < pageIds.length; i++) {
+            norms[i] = k1 * (1 - b + (averageLength > 0 ? b * lengths[i] / averageLength : b));
+        }
+
+        float[] totals = new float[pageIds.length];
+        for (QueryTerm term : terms) {
+            float idf = idf(documentCount, term.documentFrequency());
+            int[] postingIds = term.postings().pageIds();
+            float[] postingRanks = term.postings().ranks();
+            // Кандидаты и постинги упорядочены по id страницы — достаточно одного слияния
+            int j = 0;
+            for (int i = 0; i < pageIds.length && j < postingIds.length; i++) {
+                while (j < postingIds.length && postingIds[j] < pageIds[i]) {
+                    j++;
+                }
+                if (j < postingIds.length && postingIds[j] == pageIds[i]) {
+                    float tf = postingRanks[j];
+                    totals[i] += idf * tf * (k1 + 1) / (tf + norms[i]);
+                }
+            }
+        }
+        for (int i = 0; i < pageIds.length; i++) {
+            scores.put(pageIds[i], totals[i]);
+        }
+        return scores;
+    }
+
+    private static float idf(int documentCount, int documentFrequency) {
+        int df = Math.min(Math.max(0, documentFrequency), documentCount);
+        return (float) Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+    }
+}
@@ -0,0 +1,145 @@
+package searchengine.service.search;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Скомпилированный один раз на запрос набор поисковых форм: находит слова страницы,
+ * начинающиеся с любой из форм, выбирает окно с наибольшим числом разных форм и подсвечивает его.
+ */
+public final class QueryHighlighter {
+    private static final int SNIPPET_WINDOW = 300;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final String WORD_CHAR = "[\\p{L}\\p{N}]";
+
+    private final Pattern pattern;
+    private final List<String> termsByLength;
+
+    private QueryHighlighter(Pattern pattern, List<String> termsByLength) {
+        this.pattern = pattern;
+        this.termsByLength = termsByLength;
+    }
+
+    public static QueryHighlighter compile(Collection<String> terms) {
+        List<String> normalizedTerms = terms.stream()
+                .filter(Objects::nonNull)
+                .map(term -> term.trim().toLowerCase(Locale.ROOT))
+                .filter(term -> term.length() >= MIN_TERM_LENGTH)
+                .distinct()
+                .sorted(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()))
+                .toList();
+        if (normalizedTerms.isEmpty()) {
+            return new QueryHighlighter(null, normalizedTerms);
+        }
+
+        StringJoiner alternation = new StringJoiner("|", "(?<!" + WORD_CHAR + ")(?:", ")" + WORD_CHAR + "*");
+        for (int i = normalizedTerms.size() - 1; i >= 0; i--) {
+            alternation.add(Pattern.quote(normalizedTerms.get(i)));
+        }
+        Pattern pattern = Pattern.compile(alternation.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return new QueryHighlighter(pattern, normalizedTerms);
+    }
+
+    /**
+     * Есть ли в тексте хоть одна форма запроса, то есть будет ли сниппет непустым. Дешевле самого сниппета.
+     */
+    public boolean matches(String text) {
+        return pattern != null && text != null && !text.isBlank() && pattern.matcher(text).find();
+    }
+
+    public String snippet(String text) {
+        if (pattern == null || text == null || text.isBlank()) {
+            return "";
+        }
+        List<TermMatch> matches = findMatches(text);
+        if (matches.isEmpty()) {
+            return "";
+        }
+
+        int[] window = bestWindow(matches);
+        TermMatch first = matches.get(window[0]);
+        TermMatch last = matches.get(window[1]);
+        int padding = Math.max(0, SNIPPET_WINDOW - (last.end() - first.start())) / 2;
+        int snippetStart = Math.max(0, first.start() - padding);
+        int snippetEnd = Math.min(text.length(), last.end() + padding);
+
+        while (snippetStart > 0 && !Character.isWhitespace(text.charAt(snippetStart - 1))) {
+            snippetStart--;
+        }
+        while (snippetEnd < text.length() && !Character.isWhitespace(text.charAt(snippetEnd))) {
+            snippetEnd++;
+        }
+
+        StringBuilder snippet = new StringBuilder(snippetEnd - snippetStart + 32);
+        if (snippetStart > 0) {
+            snippet.append("...");
+        }
+        int lastPos = snippetStart;
+        for (TermMatch match : matches) {
+            if (match.start() < snippetStart || match.end() > snippetEnd) {
+                continue;
+            }
+            snippet.append(text, lastPos, match.start())
+                    .append("<b>")
+                    .append(text, match.start(), match.end())
+                    .append("</b>");
+            lastPos = match.end();
+        }
+        snippet.append(text, lastPos, snippetEnd);
+        if (snippetEnd < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    private List<TermMatch> findMatches(String text) {
+        List<TermMatch> matches = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            matches.add(new TermMatch(matcher.start(), matcher.end(), termOf(matcher.group())));
+        }
+        return matches;
+    }
+
+    private int termOf(String word) {
+        String lowerCaseWord = word.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < termsByLength.size(); i++) {
+            if (lowerCaseWord.startsWith(termsByLength.get(i))) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private int[] bestWindow(List<TermMatch> matches) {
+        int[] termCounts = new int[termsByLength.size()];
+        int distinct = 0;
+        int bestDistinct = 0;
+        int bestMatches = 0;
+        int[] best = {0, 0};
+        int left = 0;
+        for (int right = 0; right < matches.size(); right++) {
+            if (termCounts[matches.get(right).term()]++ == 0) {
+                distinct++;
+            }
+            while (left < right && matches.get(right).end() - matches.get(left).start() > SNIPPET_WINDOW) {
+                if (--termCounts[matches.get(left).term()] == 0) {
+                    distinct--;
+                }
+                left++;
+            }
+            int windowMatches = right - left + 1;
+            if (distinct > bestDistinct || (distinct == bestDistinct && windowMatches > bestMatches)) {
+                bestDistinct = distinct;
+                bestMatches = windowMatches;
+                best[0] = left;
+                best[1] = right;
+            }
+        }
+        return best;
+    }
+
+    private record TermMatch(int start, int end, int term) {
+    }
+}
@@ -0,0 +1,9 @@
+package searchengine.service.search;
+
+import searchengine.utils.SegmentIndexReader;
+
+/**
+ * Лемма запроса в пределах сайта: число страниц с леммой и её постинги по возрастанию id страниц.
+ */
+public record QueryTerm(String lemma, int documentFrequency, SegmentIndexReader.Postings postings) {
+}
@@ -0,0 +1,8 @@
+package searchengine.service.search;
+
+import java.util.Comparator;
+
+public record RankedPage(int pageId, float relevance) {
+    public static final Comparator<RankedPage> BY_RELEVANCE = Comparator.comparingDouble(RankedPage::relevance)
+            .thenComparing(Comparator.comparingInt(RankedPage::pageId).reversed());
+}
@@ -0,0 +1,13 @@
+package searchengine.service.search;
+
+import searchengine.utils.IntFloatMap;
+
+import java.util.List;
+
+/**
+ * Оценка релевантности страниц-кандидатов сайта. Реализация выбирается параметром
+ * {@code indexing-settings.search.scorer}; нормировка к максимуму выполняется вызывающей стороной.
+ */
+public interface RelevanceScorer {
+    IntFloatMap score(int siteId, List<QueryTerm> terms, int[] pageIds);
+}
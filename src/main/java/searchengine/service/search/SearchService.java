@@ -4,4 +4,9 @@ import java.io.IOException;
 
 public interface SearchService<T> {
     T search(String query, String site, int offset, int limit) throws IOException;
+
+    /**
+     * Ранжирует выдачу сразу, а заголовки и сниппеты отдаёт потоком при записи ответа.
+     */
+    SearchStream stream(String query, String site, int offset, int limit);
 }
@@ -1,33 +1,38 @@
 package searchengine.service.search;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.lucene.morphology.LuceneMorphology;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.tartarus.snowball.ext.EnglishStemmer;
-import org.tartarus.snowball.ext.RussianStemmer;
-import searchengine.dto.search.Match;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.PageSummary;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.search.SearchResult;
 import searchengine.exceptions.IndexNotReadyException;
-import searchengine.model.LemmaModel;
-import searchengine.model.PageModel;
 import searchengine.model.SiteModel;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
-import searchengine.utils.FinderLemma;
-
+import searchengine.utils.CorpusStatistics;
+import searchengine.utils.IntFloatMap;
+import searchengine.utils.LemmaCache;
+import searchengine.utils.PostingsReader;
+import searchengine.utils.SearchResultCache;
+import searchengine.utils.TextAnalyzer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -36,98 +41,267 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 @Service
 public class SearchServiceImpl implements SearchService<SearchResponse> {
-    private final FinderLemma finderLemmaService;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final TextAnalyzer textAnalyzer;
+    private final LemmaCache lemmaCache;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
-    private final LuceneMorphology luceneMorphologyRu;
-    private final LuceneMorphology luceneMorphologyEng;
-    private final RussianStemmer russianStemmer;
-    private final EnglishStemmer englishStemmer;
-    private static final double FREQUENCY_THRESHOLD = 0.8;
+    private final PostingsReader postingsReader;
+    private final CorpusStatistics corpusStatistics;
+    private final RelevanceScorer relevanceScorer;
+    private final SearchSettings searchSettings;
+    private final SearchResultCache searchResultCache;
+    private final MeterRegistry meterRegistry;
+    private ExecutorService siteSearchExecutor;
+    private static final Pattern QUERY_WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @PostConstruct
+    public void startSiteSearchExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("search-site-");
+        threadFactory.setDaemon(true);
+        siteSearchExecutor = Executors.newFixedThreadPool(Math.max(1, searchSettings.getFanOutThreads()),
+                threadFactory);
+    }
+
+    @PreDestroy
+    public void stopSiteSearchExecutor() {
+        siteSearchExecutor.shutdownNow();
+    }
 
-    @Transactional
     @Override
     public SearchResponse search(String query, String site, int offset, int limit) throws IndexNotReadyException {
-        List<SiteModel> sitesList = siteRepository.findAll();
-        List<SearchResult> allResults = new ArrayList<>(searchResults(query, site));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        RankedQuery rankedQuery = rank(query, site, offset, limit);
+        List<SearchResult> results = phaseTimer("snippets")
+                .record(() -> buildSearchResults(rankedQuery.pages(), rankedQuery.highlighter()));
+        sample.stop(meterRegistry.timer("search.requests", "partial", String.valueOf(rankedQuery.partial())));
+        return new SearchResponse(true, rankedQuery.count(), results, rankedQuery.partial());
+    }
 
-        if (query.isBlank()) {
+    @Override
+    public SearchStream stream(String query, String site, int offset, int limit) throws IndexNotReadyException {
+        long start = System.nanoTime();
+        RankedQuery rankedQuery = rank(query, site, offset, limit);
+        List<SearchResult> hits = new ArrayList<>(rankedQuery.pages().size());
+        List<String> texts = new ArrayList<>(rankedQuery.pages().size());
+        for (ShownPage shownPage : rankedQuery.pages()) {
+            PageSummary page = shownPage.page();
+            hits.add(new SearchResult(page.siteUrl(), page.siteName(), page.path(), page.title(), null,
+                    shownPage.relevance()));
+            texts.add(page.text());
+        }
+        return new SearchStream(start, rankedQuery.count(), rankedQuery.partial(), hits, texts,
+                rankedQuery.highlighter(), meterRegistry);
+    }
+
+    /**
+     * Ранжирует запрошенный участок выдачи по всем сайтам или по одному; сниппеты здесь не строятся.
+     * Сдвиг и размер участка отсчитываются по показываемым страницам ({@link #isShown}): скрытые пропускаются,
+     * а кандидаты добираются из ранжирования, пока участок не заполнится или кандидаты не кончатся.
+     * count — число кандидатов без скрытых среди просмотренных; точное, если просмотрены все кандидаты.
+     */
+    private RankedQuery rank(String query, String site, int offset, int limit) throws IndexNotReadyException {
+        if (query == null || query.isBlank()) {
             throw new IllegalArgumentException("Задан пустой поисковый запрос");
         }
 
+        // Только активные поколения: строящаяся копия сайта в поиск не попадает до переключения
+        List<SiteModel> sitesList = siteRepository.findByActiveTrue();
         if (sitesList.isEmpty()) {
             throw new IndexNotReadyException("Сайты для поиска отсутствуют");
         }
 
-        if (site == null) {
-            for (SiteModel siteModel : sitesList) {
-                List<SearchResult> siteResults = searchResults(query, siteModel.getUrl());
-                allResults.addAll(siteResults);
+        if (site != null) {
+            sitesList = sitesList.stream()
+                    .filter(siteModel -> siteModel.getUrl().equals(site))
+                    .toList();
+        }
+
+        Set<String> lemmasSet = phaseTimer("analysis").record(() -> extractAndProcessLemmas(query));
+        QueryHighlighter highlighter = compileHighlighter(query, lemmasSet);
+        int skip = Math.max(0, offset);
+        int wanted = Math.max(0, limit);
+        int topK = skip + wanted;
+        List<ShownPage> shownPages = new ArrayList<>(wanted);
+        int examined = 0;
+        int shown = 0;
+        int hidden = 0;
+        while (true) {
+            List<SearchResultCache.Ranking> rankings = new ArrayList<>(sitesList.size());
+            boolean partial = rankSites(lemmasSet, sitesList, topK, rankings);
+            int total = rankings.stream()
+                    .mapToInt(SearchResultCache.Ranking::total)
+                    .sum();
+            List<RankedPage> rankedPages = mergeTopK(rankings, topK);
+            List<RankedPage> candidates = rankedPages.subList(Math.min(examined, rankedPages.size()),
+                    rankedPages.size());
+            Map<Integer, PageSummary> pagesById = candidates.isEmpty() || shownPages.size() == wanted ? Map.of()
+                    : loadPageSummaries(candidates.stream().map(RankedPage::pageId).toList());
+            for (RankedPage rankedPage : candidates) {
+                if (shownPages.size() == wanted) {
+                    break;
+                }
+                examined++;
+                PageSummary page = pagesById.get(rankedPage.pageId());
+                if (!isShown(page, highlighter)) {
+                    hidden++;
+                } else if (++shown > skip) {
+                    shownPages.add(new ShownPage(page, rankedPage.relevance()));
+                }
+            }
+            // Меньше topK кандидатов значит, что ранжирования сайтов полные и добирать нечего
+            if (shownPages.size() == wanted || rankedPages.size() < topK) {
+                return new RankedQuery(total - hidden, partial, shownPages, highlighter);
             }
+            topK += Math.max(topK, 1);
         }
+    }
 
-        List<SearchResult> paginatedResults = allResults
-                .stream()
-                .skip(offset)
-                .limit(limit)
-                .collect(Collectors.toList());
-        return new SearchResponse(true, allResults.size(), paginatedResults);
+    /**
+     * Ранжирует сайты параллельно в общем ограниченном пуле. Вызывающий поток не держит транзакцию:
+     * иначе каждый запрос занимал бы два соединения из пула, и при нагрузке задачи сайтов ждали бы соединение. Сайт, не ответивший до истечения timeout-ms
+     * или завершившийся ошибкой, пропускается, а выдача помечается как неполная.
+     */
+    private boolean rankSites(Set<String> lemmasSet, List<SiteModel> sites, int topK,
+                              List<SearchResultCache.Ranking> rankings) {
+        if (sites.size() == 1) {
+            rankings.add(rankSite(lemmasSet, sites.get(0), topK));
+            return false;
+        }
+        List<Future<SearchResultCache.Ranking>> futures = sites.stream()
+                .map(siteModel -> siteSearchExecutor.submit(() -> rankSite(lemmasSet, siteModel, topK)))
+                .toList();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchSettings.getTimeoutMs());
+        boolean partial = false;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<SearchResultCache.Ranking> future = futures.get(i);
+            try {
+                rankings.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                partial = true;
+                log.warn("Сайт {} не ответил за {} мс и пропущен в выдаче", sites.get(i).getUrl(),
+                        searchSettings.getTimeoutMs());
+            } catch (ExecutionException e) {
+                partial = true;
+                log.error("Ошибка поиска по сайту {}: {}", sites.get(i).getUrl(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                return true;
+            }
+        }
+        return partial;
     }
 
-    @Transactional
-    public List<SearchResult> searchResults(String query, String site) {
-        Set<String> lemmasSet = extractAndProcessLemmas(query);
+    /**
+     * K-путевое слияние ранжирований сайтов: в куче лежит по одной текущей странице от каждого сайта.
+     */
+    private static List<RankedPage> mergeTopK(List<SearchResultCache.Ranking> rankings, int topK) {
+        PriorityQueue<RankingCursor> heads = new PriorityQueue<>(Math.max(1, rankings.size()),
+                RankingCursor.BEST_FIRST);
+        rankings.stream()
+                .filter(ranking -> ranking.pageIds().length > 0)
+                .map(RankingCursor::new)
+                .forEach(heads::add);
+        List<RankedPage> merged = new ArrayList<>();
+        while (merged.size() < topK && !heads.isEmpty()) {
+            RankingCursor cursor = heads.poll();
+            merged.add(new RankedPage(cursor.pageId(), cursor.relevance()));
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
 
-        long totalPages = pageRepository.count();
-        SiteModel siteModel = siteRepository.findByUrl(site);
+    /**
+     * Ранжирование сайта из кэша результатов; при промахе считается заново не менее чем на cache-depth страниц,
+     * чтобы следующие страницы выдачи обслуживались из кэша.
+     */
+    private SearchResultCache.Ranking rankSite(Set<String> lemmasSet, SiteModel siteModel, int topK) {
+        SearchResultCache.Key key = searchResultCache.key(lemmasSet, siteModel);
+        Optional<SearchResultCache.Ranking> cached = searchResultCache.get(key, topK);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        SearchResultCache.Ranking ranking = toRanking(rankPages(lemmasSet, siteModel),
+                Math.max(topK, searchSettings.getCacheDepth()));
+        searchResultCache.put(key, ranking);
+        return ranking;
+    }
 
-        if (siteModel == null) {
-            return Collections.emptyList();
+    private static SearchResultCache.Ranking toRanking(IntFloatMap relevanceByPageId, int depth) {
+        PriorityQueue<RankedPage> topPages = new PriorityQueue<>(RankedPage.BY_RELEVANCE);
+        relevanceByPageId.forEach((pageId, relevance) -> offerTopK(topPages, pageId, relevance, depth));
+        RankedPage[] rankedPages = topPages.toArray(new RankedPage[0]);
+        Arrays.sort(rankedPages, RankedPage.BY_RELEVANCE.reversed());
+        int[] pageIds = new int[rankedPages.length];
+        float[] relevance = new float[rankedPages.length];
+        for (int i = 0; i < rankedPages.length; i++) {
+            pageIds[i] = rankedPages[i].pageId();
+            relevance[i] = rankedPages[i].relevance();
         }
-        Map<String, Float> filteredLemmasByFrequency = getFilteredLemmas(lemmasSet, totalPages, siteModel);
-        Set<String> sortedLemmasByFrequency = sortLemmasByFrequency(filteredLemmasByFrequency);
+        return new SearchResultCache.Ranking(pageIds, relevance, relevanceByPageId.size());
+    }
 
-        List<PageModel> pages = findPagesByLemmas(sortedLemmasByFrequency);
+    public IntFloatMap rankPages(Set<String> lemmasSet, SiteModel siteModel) {
+        Set<String> sortedLemmasByFrequency = phaseTimer("filter")
+                .record(() -> sortLemmasByFrequency(getFilteredLemmas(lemmasSet, siteModel)));
 
-        if (pages.isEmpty()) {
-            return Collections.emptyList();
-        }
+        List<QueryTerm> terms = new ArrayList<>(sortedLemmasByFrequency.size());
+        int[] pageIds = phaseTimer("retrieval")
+                .record(() -> findPageIdsByLemmas(sortedLemmasByFrequency, siteModel, terms));
+        return phaseTimer("scoring").record(() -> calculateRelevance(siteModel, terms, pageIds));
+    }
 
-        List<SearchResult> searchResults = new ArrayList<>(processLemmas(pages, query, sortedLemmasByFrequency));
+    private Timer phaseTimer(String phase) {
+        return meterRegistry.timer("search.phase", "phase", phase);
+    }
 
-        if (site.isEmpty()) {
-            return searchResults;
+    private static void offerTopK(PriorityQueue<RankedPage> topPages, int pageId, float relevance, int topK) {
+        if (topK == 0) {
+            return;
+        }
+        if (topPages.size() < topK) {
+            topPages.add(new RankedPage(pageId, relevance));
+            return;
+        }
+        // Объект создаётся только для страницы, которая действительно попадает в верхние topK
+        RankedPage weakest = topPages.peek();
+        if (relevance > weakest.relevance() || (relevance == weakest.relevance() && pageId < weakest.pageId())) {
+            topPages.poll();
+            topPages.add(new RankedPage(pageId, relevance));
         }
-
-        return searchResults.stream()
-                .filter(searchResult -> searchResult.getSite().equals(site))
-                .toList();
     }
 
     private Set<String> extractAndProcessLemmas(String query) {
-        List<String> targetWordsRu = finderLemmaService.extractWordsFromContent(query, FinderLemma.REGEX_RU);
-        List<String> targetWordsEng = finderLemmaService.extractWordsFromContent(query, FinderLemma.REGEX_ENG);
-        Set<String> lemmasSet = new ConcurrentSkipListSet<>(finderLemmaService.mapLemmaAndCounts(targetWordsRu, luceneMorphologyRu, () -> russianStemmer).keySet());
-        lemmasSet.addAll(new ConcurrentSkipListSet<>(finderLemmaService.mapLemmaAndCounts(targetWordsEng, luceneMorphologyEng, () -> englishStemmer).keySet()));
-        return lemmasSet;
+        return textAnalyzer.lemmas(query);
     }
 
-    @Transactional
-    public Map<String, Float> getFilteredLemmas(Set<String> lemmasSet, long totalPages, SiteModel siteModel) {
-        Map<String, Float> filteredLemmasByFrequency = new ConcurrentHashMap<>();
-        lemmasSet.forEach(lemmaSet -> {
-            LemmaModel lemmaModel = lemmaRepository.findByLemmaAndSite(lemmaSet, siteModel);
-            if (lemmaModel != null) {
-                long lemmaFrequency = lemmaRepository.countByLemma(lemmaSet);
-                float frequency = (float) lemmaFrequency / totalPages;
-                if (frequency < FREQUENCY_THRESHOLD) {
-                    filteredLemmasByFrequency.put(lemmaModel.getLemma(), frequency);
-                }
+    /**
+     * Доля страниц сайта, содержащих каждую лемму запроса. Слишком частые леммы отбрасываются,
+     * но если частыми оказались все, остаётся самая редкая из них.
+     */
+    public Map<String, Float> getFilteredLemmas(Set<String> lemmasSet, SiteModel siteModel) {
+        int documentCount = corpusStatistics.documentCount(siteModel.getId());
+        Map<String, Float> filteredLemmasByFrequency = new HashMap<>();
+        Map.Entry<String, Float> rarest = null;
+        for (String lemma : lemmasSet) {
+            Optional<LemmaCache.LemmaEntry> entry = lemmaCache.get(siteModel.getId(), lemma);
+            if (entry.isEmpty()) {
+                continue;
+            }
+            float frequency = documentCount == 0 ? 0 : (float) entry.get().getFrequency() / documentCount;
+            if (frequency < searchSettings.getFrequencyThreshold()) {
+                filteredLemmasByFrequency.put(lemma, frequency);
+            } else if (rarest == null || frequency < rarest.getValue()) {
+                rarest = Map.entry(lemma, frequency);
             }
-        });
-        return filteredLemmasByFrequency.isEmpty() ? Collections.emptyMap() : filteredLemmasByFrequency;
+        }
+        if (filteredLemmasByFrequency.isEmpty() && rarest != null) {
+            return Map.ofEntries(rarest);
+        }
+        return filteredLemmasByFrequency;
     }
 
     private Set<String> sortLemmasByFrequency(Map<String, Float> lemmaByFrequency) {
@@ -137,207 +311,162 @@ public class SearchServiceImpl implements SearchService<SearchResponse> {
                 .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
-    @Transactional
-    public List<PageModel> findPagesByLemmas(Set<String> sortedLemmasByFrequency) {
+    public int[] findPageIdsByLemmas(Set<String> sortedLemmasByFrequency, SiteModel siteModel,
+                                     List<QueryTerm> terms) {
         if (sortedLemmasByFrequency.isEmpty()) {
-            return Collections.emptyList();
+            return new int[0];
         }
-        String firstLemma = sortedLemmasByFrequency.iterator().next();
-        return indexRepository.findPagesByLemma(firstLemma);
-    }
-
-    @Transactional
-    public List<SearchResult> processLemmas(List<PageModel> initialPages, String query, Set<String> sortedLemmasByFrequency) {
-        Map<PageModel, Float> relevanceMap = calculateRelevance(initialPages);
-        return initialPages.stream()
-                .map(page ->
-                        createSearchResult(page, relevanceMap.getOrDefault(page, 0.0f), query, sortedLemmasByFrequency))
-                .filter(result -> !result.getSnippet().isEmpty() && !result.getTitle().isEmpty())
-                .sorted(Comparator.comparingDouble(SearchResult::getRelevance).reversed())
-                .collect(Collectors.toList());
+        return intersectPostings(sortedLemmasByFrequency, siteModel, terms);
     }
 
-    private SearchResult createSearchResult(PageModel page, float relevance, String query, Set<String> sortedLemmasByFrequency) {
-        String snippet = generateSnippet(page.getContent(), query, sortedLemmasByFrequency);
-        String title = extractTitleFromHtml(page.getContent());
-        return new SearchResult(page.getSite().getUrl(), page.getSite().getName(), page.getPath(),
-                title, snippet, relevance);
-    }
-
-    @Transactional(readOnly = true)
-    public Map<PageModel, Float> calculateRelevance(List<PageModel> pages) {
-        if (pages.isEmpty()) {
-            return Collections.emptyMap();
+    /**
+     * Пересекает постинги от самой редкой леммы к самой частой, складывая прочитанные постинги в terms.
+     */
+    private int[] intersectPostings(Set<String> rarestFirst, SiteModel siteModel, List<QueryTerm> terms) {
+        List<LemmaCache.LemmaEntry> entries = new ArrayList<>(rarestFirst.size());
+        for (String lemma : rarestFirst) {
+            Optional<LemmaCache.LemmaEntry> entry = lemmaCache.get(siteModel.getId(), lemma);
+            if (entry.isEmpty()) {
+                return new int[0];
+            }
+            entries.add(entry.get());
         }
 
-        List<Integer> pageIds = pages.stream()
-                .map(PageModel::getId)
-                .toList();
-        Map<Integer, Float> ranksByPageId = indexRepository.sumRankByPageIds(pageIds).stream()
-                .collect(Collectors.toMap(
-                        tuple -> ((Number) ((Object[]) tuple)[0]).intValue(),
-                        tuple -> ((Number) ((Object[]) tuple)[1]).floatValue(),
-                        (existing, replacement) -> existing, HashMap::new
-                ));
-        return pages.stream()
-                .collect(
-                        Collectors.collectingAndThen(
-                                Collectors.toMap(
-                                        Function.identity(),
-                                        page -> ranksByPageId.getOrDefault(page.getId(), 0.0F)
-                                ),
-                                map -> {
-                                    float max = map.values().stream()
-                                            .max(Float::compare)
-                                            .orElse(1.0F);
-
-                                    if (max > 0) {
-                                        map.replaceAll((k, v) -> v / max);
-                                    }
-                                    return map;
-                                }
-                        )
-                );
-    }
-
-    private static String extractTitleFromHtml(String htmlContent) {
-        if (htmlContent == null || htmlContent.isEmpty()) {
-            return "";
+        int[] pageIds = null;
+        int index = 0;
+        for (String lemma : rarestFirst) {
+            LemmaCache.LemmaEntry entry = entries.get(index++);
+            QueryTerm term = new QueryTerm(lemma, entry.getFrequency(),
+                    postingsReader.postings(siteModel.getId(), lemma, entry.getId()));
+            terms.add(term);
+            int[] postings = term.postings().pageIds();
+            pageIds = pageIds == null ? postings : intersect(pageIds, postings);
+            if (pageIds.length == 0) {
+                log.debug("Пересечение лемм пустое на лемме с id: {}", entry.getId());
+                return pageIds;
+            }
         }
+        return pageIds == null ? new int[0] : pageIds;
+    }
 
-        Pattern pattern = Pattern.compile("<title>(.*?)</title>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(htmlContent);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    /**
+     * Пересечение двух возрастающих массивов id; короткий массив ищется в длинном двоичным поиском.
+     */
+    private static int[] intersect(int[] candidates, int[] postings) {
+        int[] result = new int[Math.min(candidates.length, postings.length)];
+        int size = 0;
+        if (candidates.length * 8 < postings.length) {
+            int from = 0;
+            for (int pageId : candidates) {
+                int index = Arrays.binarySearch(postings, from, postings.length, pageId);
+                if (index >= 0) {
+                    result[size++] = pageId;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < candidates.length && j < postings.length) {
+                if (candidates[i] < postings[j]) {
+                    i++;
+                } else if (candidates[i] > postings[j]) {
+                    j++;
+                } else {
+                    result[size++] = candidates[i];
+                    i++;
+                    j++;
+                }
+            }
         }
-        return "";
+        return Arrays.copyOf(result, size);
     }
 
-    public String generateSnippet(String content, String query, Set<String> sortLemmas) {
-        String plainText = prepareText(content);
-        return buildSnippet(plainText, query, sortLemmas);
+    private List<SearchResult> buildSearchResults(List<ShownPage> shownPages, QueryHighlighter highlighter) {
+        return shownPages.stream()
+                .map(shownPage -> createSearchResult(shownPage.page(), shownPage.relevance(), highlighter))
+                .collect(Collectors.toList());
     }
 
-    private String buildSnippet(String text, String query, Set<String> sortLemmas) {
-
-        if (StringUtils.isBlank(query) || StringUtils.isBlank(text)) {
-            return "";
-        }
-
-        List<String> pageWords = Arrays.asList(text.split("[\\s,.!?;:]"));
-        List<String> queryWords = Arrays.asList(query.split("[\\s,.!?;:]"));
-        List<String> matchingWords = findAllMatchingWords(sortLemmas, pageWords, queryWords);
-        String matchingWord = findMatchingWord(matchingWords, pageWords);
-        log.info("Найденное слова: {}", matchingWord);
-
-        if (matchingWord.isEmpty()) {
-            return "";
-        }
-
-        Pattern pattern = Pattern.compile("\\b" + matchingWord + "\\b");
-        Matcher matcher = pattern.matcher(text);
-
-        if (!matcher.find()) {
-            return "";
-        }
-
-        int queryStart = matcher.start();
-        int queryEnd = matcher.end();
+    /**
+     * Общее для /search и потоковой выдачи правило: страница показывается, если у неё есть заголовок
+     * и в тексте найдётся фрагмент для сниппета.
+     */
+    private static boolean isShown(PageSummary page, QueryHighlighter highlighter) {
+        return page != null && StringUtils.isNotEmpty(page.title()) && highlighter.matches(page.text());
+    }
 
-        int snippetLength = 150;
-        int snippetStart = Math.max(0, queryStart - snippetLength);
-        int snippetEnd = Math.min(text.length(), queryEnd + snippetLength);
+    /**
+     * Заголовок и текст страниц уже заполнены при индексации или при старте ({@link searchengine.utils.PageTextBackfill}).
+     * Выборка идёт в собственной транзакции только для чтения ({@link PageRepository#findSummariesByIds}).
+     */
+    private Map<Integer, PageSummary> loadPageSummaries(List<Integer> pageIds) {
+        return pageRepository.findSummariesByIds(pageIds).stream()
+                .collect(Collectors.toMap(PageSummary::id, Function.identity()));
+    }
 
-        while (snippetStart > 0 && !Character.isWhitespace(text.charAt(snippetStart - 1))) {
-            snippetStart--;
-        }
+    private SearchResult createSearchResult(PageSummary page, float relevance, QueryHighlighter highlighter) {
+        String snippet = highlighter.snippet(page.text());
+        return new SearchResult(page.siteUrl(), page.siteName(), page.path(),
+                StringUtils.defaultString(page.title()), snippet, relevance);
+    }
 
-        while (snippetEnd < text.length() && !Character.isWhitespace(text.charAt(snippetEnd))) {
-            snippetEnd++;
+    public IntFloatMap calculateRelevance(SiteModel siteModel, List<QueryTerm> terms, int[] pageIds) {
+        if (pageIds.length == 0) {
+            return new IntFloatMap(0);
         }
-
-        String snippetRaw = text.substring(snippetStart, snippetEnd);
-        log.info("Найденный отрывок: {}", snippetRaw);
-
-        StringBuilder snippet = new StringBuilder();
-
-        if (snippetStart > 0) {
-            snippet.append("...");
+        IntFloatMap ranksByPageId = relevanceScorer.score(siteModel.getId(), terms, pageIds);
+        float max = ranksByPageId.isEmpty() ? 1.0F : ranksByPageId.max();
+        if (max > 0) {
+            ranksByPageId.divideAll(max);
         }
+        return ranksByPageId;
+    }
 
-        List<Match> allMatches = new ArrayList<>();
-        Set<String> allMatchingWords = new HashSet<>(matchingWords);
-        allMatchingWords.addAll(queryWords);
+    public String generateSnippet(String plainText, String query, Set<String> sortLemmas) {
+        return compileHighlighter(query, sortLemmas).snippet(plainText);
+    }
 
-        allMatchingWords.forEach(word -> {
-            Matcher wordMatcher = Pattern.compile("\\b" + word + "\\b")
-                    .matcher(snippetRaw);
-            while (wordMatcher.find()) {
-                allMatches.add(new Match(wordMatcher.start(), wordMatcher.end()));
+    private static QueryHighlighter compileHighlighter(String query, Set<String> lemmas) {
+        Set<String> terms = new HashSet<>(lemmas);
+        for (String word : QUERY_WORD_SEPARATOR.split(StringUtils.defaultString(query))) {
+            if (word.length() > 3) {
+                terms.add(word);
             }
-        });
-
-        allMatches.sort(Comparator.comparingInt(Match::start));
-        snippet = highlightingSnippet(allMatches, snippetRaw, snippet);
-
-        if (snippetEnd < text.length()) {
-            snippet.append("...");
         }
-
-        return snippet.toString();
-
+        return QueryHighlighter.compile(terms);
     }
 
-    private StringBuilder highlightingSnippet(List<Match> allMatches, String snippetRaw, StringBuilder snippet) {
-        AtomicInteger lastPos = new AtomicInteger(0);
-        allMatches.forEach(match -> {
-            snippet.append(snippetRaw, lastPos.get(), match.start());
-            snippet.append("<b>")
-                    .append(snippetRaw, match.start(), match.end())
-                    .append("</b>");
-            lastPos.set(match.end());
-        });
-
-        return snippet.append(snippetRaw.substring(lastPos.get()));
+    private record RankedQuery(int count, boolean partial, List<ShownPage> pages, QueryHighlighter highlighter) {
     }
 
-    private List<String> findAllMatchingWords(Set<String> sortedLemmas, List<String> pageWords, List<String> queryWords) {
-        queryWords.forEach(word -> {
-            if (!extractAndProcessLemmas(word).isEmpty() && word.length() > 3) {
-                sortedLemmas.add(word);
-            }
-        });
+    private record ShownPage(PageSummary page, float relevance) {
+    }
 
-        return pageWords.stream()
-                .filter(word -> sortedLemmas.stream()
-                        .anyMatch(lemma -> word.equalsIgnoreCase(lemma) || word.toLowerCase().contains(lemma.toLowerCase())))
-                .distinct()
-                .collect(Collectors.toList());
+    private static final class RankingCursor {
+        private static final Comparator<RankingCursor> BEST_FIRST = Comparator
+                .comparingDouble(RankingCursor::relevance).reversed()
+                .thenComparingInt(RankingCursor::pageId);
 
-    }
+        private final SearchResultCache.Ranking ranking;
+        private int position;
 
-    private String findMatchingWord(List<String> matchingWords, List<String> pageWords) {
-        return pageWords.stream()
-                .filter(pageWord -> matchingWords.stream()
-                        .anyMatch(matchingWord -> pageWord.toLowerCase().startsWith(matchingWord.toLowerCase())))
-                .findFirst()
-                .orElse("");
-    }
+        private RankingCursor(SearchResultCache.Ranking ranking) {
+            this.ranking = ranking;
+        }
 
+        private int pageId() {
+            return ranking.pageIds()[position];
+        }
 
-    private String prepareText(String content) {
-        if (StringUtils.isBlank(content)) {
-            return "";
+        private float relevance() {
+            return ranking.relevance()[position];
         }
 
-        return content.replaceAll("<[^>]+>", " ")
-                .replaceAll("\\{.*?\\}", " ")
-                .replaceAll("\\w+\\(.*?\\)", " ")
-                .replaceAll("[^А-Яа-яЁёA-Za-z0-9\\s]", " ")
-                .replaceAll("\\s+", " ")
-                .trim();
+        private boolean advance() {
+            return ++position < ranking.pageIds().length;
+        }
     }
 }
-
-
-
@@ -0,0 +1,52 @@
+package searchengine.service.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import searchengine.dto.search.SearchResult;
+import searchengine.dto.search.SearchStreamEvent;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выдача, ранжированная в потоке запроса. Первым событием отправляются страницы с заголовками,
+ * затем сниппеты по одному в порядке выдачи, так что клиент показывает результаты, не дожидаясь самого медленного.
+ */
+public final class SearchStream {
+    private final long startNanos;
+    private final int count;
+    private final boolean partial;
+    private final List<SearchResult> hits;
+    private final List<String> texts;
+    private final QueryHighlighter highlighter;
+    private final MeterRegistry meterRegistry;
+
+    SearchStream(long startNanos, int count, boolean partial, List<SearchResult> hits, List<String> texts,
+                 QueryHighlighter highlighter, MeterRegistry meterRegistry) {
+        this.startNanos = startNanos;
+        this.count = count;
+        this.partial = partial;
+        this.hits = hits;
+        this.texts = texts;
+        this.highlighter = highlighter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Отправляет события; ошибка записи, например отключение клиента, прекращает построение сниппетов.
+     */
+    public void writeTo(Sink sink) throws IOException {
+        sink.send(SearchStreamEvent.ranking(count, partial, hits));
+        meterRegistry.timer("search.stream.first.byte").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        for (int position = 0; position < hits.size(); position++) {
+            sink.send(SearchStreamEvent.snippet(position, highlighter.snippet(texts.get(position))));
+        }
+        meterRegistry.timer("search.stream.requests", "partial", String.valueOf(partial))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @FunctionalInterface
+    public interface Sink {
+        void send(SearchStreamEvent event) throws IOException;
+    }
+}
@@ -0,0 +1,26 @@
+package searchengine.service.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.utils.IntFloatMap;
+import searchengine.utils.PostingsReader;
+
+import java.util.List;
+
+/**
+ * Прежняя оценка: сумма рангов всех лемм страницы.
+ */
+@Component
+@ConditionalOnProperty(prefix = "indexing-settings.search", name = "scorer", havingValue = "sum-rank",
+        matchIfMissing = true)
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SumRankScorer implements RelevanceScorer {
+    private final PostingsReader postingsReader;
+
+    @Override
+    public IntFloatMap score(int siteId, List<QueryTerm> terms, int[] pageIds) {
+        return postingsReader.rankSums(siteId, pageIds);
+    }
+}
@@ -5,65 +5,71 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.CrawlProgress;
+import searchengine.dto.indexing.IndexingResponse;
 import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.SiteModel;
-import searchengine.repositories.LemmaRepository;
-import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.service.indexing.IndexingService;
+import searchengine.utils.LemmaCache;
+import searchengine.utils.PageCounter;
 
-import java.time.Instant;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Статистика по сайтам из счётчиков в памяти: число страниц ведёт {@link PageCounter},
+ * число лемм — словарь {@link LemmaCache}, поэтому опрос не выполняет COUNT по таблицам page и lemma.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor(onConstructor_ = {@Autowired})
 public class StatisticsServiceImpl implements StatisticsService {
 
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmasRepository;
+    private final PageCounter pageCounter;
+    private final LemmaCache lemmaCache;
+    private final IndexingService<IndexingResponse> indexingService;
 
     @Transactional(readOnly = true)
     @Override
     public StatisticsResponse getStatistics() {
         TotalStatistics total = new TotalStatistics();
-        total.setSites(siteRepository.count());
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        List<SiteModel> sitesList = siteRepository.findAll();
+        List<SiteModel> sitesList = siteRepository.findByActiveTrue();
+        Map<String, CrawlProgress> crawlProgress = indexingService.getCrawlProgress();
 
-        long totalPages = sitesList.stream()
-                .mapToLong(site -> pageRepository.countBySiteId(site.getId()))
-                .sum();
-
-        long totalLemmas = sitesList.stream()
-                .mapToLong(site -> lemmasRepository.countBySiteId(site.getId()))
-                .sum();
-
-        total.setPages(totalPages);
-        total.setLemmas(totalLemmas);
-        total.setIndexing(true);
-
-        log.info("Total sites: {}", total.getSites());
-        log.info("Total pages: {}", total.getPages());
-        log.info("Total lemmas: {}", total.getLemmas());
-
-        sitesList.forEach(site -> {
+        long totalPages = 0;
+        long totalLemmas = 0;
+        for (SiteModel site : sitesList) {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setName(site.getName());
             item.setUrl(site.getUrl());
-            int pages = pageRepository.countBySiteId(site.getId());
-            int lemmas = lemmasRepository.countBySiteId(site.getId());
-            item.setPages(pages);
-            item.setLemmas(lemmas);
+            item.setPages(pageCounter.count(site.getId()));
+            item.setLemmas(lemmaCache.lemmaCount(site.getId()));
             item.setStatus(site.getStatus().toString());
             item.setError(site.getLastError());
-            item.setStatusTime(Instant.now().toEpochMilli());
+            item.setStatusTime(site.getStatusTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            CrawlProgress progress = crawlProgress.get(site.getUrl());
+            if (progress != null) {
+                item.setCrawledPages(progress.processedPages());
+                item.setQueuedPages(progress.pendingPages());
+            }
+            totalPages += item.getPages();
+            totalLemmas += item.getLemmas();
             detailed.add(item);
-        });
+        }
+
+        total.setSites(sitesList.size());
+        total.setPages(totalPages);
+        total.setLemmas(totalLemmas);
+        total.setIndexing(indexingService.isIndexing());
+        log.debug("Статистика: сайтов {}, страниц {}, лемм {}", total.getSites(), total.getPages(), total.getLemmas());
 
         StatisticsResponse response = new StatisticsResponse();
         StatisticsData data = new StatisticsData();
@@ -0,0 +1,60 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие HTML страниц для таблицы page_content: UTF-8 + deflate (формат zlib с контрольной суммой).
+ * Deflater и Inflater держат нативную память, поэтому у каждого потока они свои и переиспользуются.
+ */
+public final class ContentCodec {
+    private static final int BUFFER_SIZE = 8192;
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private ContentCodec() {
+    }
+
+    public static byte[] compress(String content) {
+        if (content == null) {
+            return null;
+        }
+        byte[] input = content.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return output.toByteArray();
+    }
+
+    public static String decompress(byte[] compressed) {
+        if (compressed == null) {
+            return null;
+        }
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(compressed.length * 4);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Сжатое содержимое страницы обрезано");
+                }
+                output.write(buffer, 0, inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Повреждено сжатое содержимое страницы", e);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
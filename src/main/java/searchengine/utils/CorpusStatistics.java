@@ -0,0 +1,102 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Статистика корпуса сайта для ранжирования: число проиндексированных страниц и длина каждой страницы
+ * (сумма частот её лемм). Загружается при старте и дальше обновляется индексатором после фиксации транзакций.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CorpusStatistics {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, SiteStatistics> statistics = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        jdbcTemplate.queryForList("SELECT id FROM site WHERE active", Integer.class)
+                .forEach(this::statistics);
+        log.info("Статистика корпуса загружена для сайтов: {}", statistics.size());
+    }
+
+    public int documentCount(int siteId) {
+        return statistics(siteId).documentCount();
+    }
+
+    public float averageLength(int siteId) {
+        return statistics(siteId).averageLength();
+    }
+
+    /**
+     * Длины страниц в порядке переданных id; для неизвестной страницы возвращается средняя длина.
+     */
+    public float[] pageLengths(int siteId, int[] pageIds) {
+        return statistics(siteId).lengths(pageIds);
+    }
+
+    public void putPage(int siteId, int pageId, int length) {
+        statistics(siteId).put(pageId, length);
+    }
+
+    public void removePage(int siteId, int pageId) {
+        statistics(siteId).remove(pageId);
+    }
+
+    public void evictSite(int siteId) {
+        statistics.remove(siteId);
+    }
+
+    private SiteStatistics statistics(int siteId) {
+        return statistics.computeIfAbsent(siteId, this::load);
+    }
+
+    private SiteStatistics load(int siteId) {
+        SiteStatistics siteStatistics = new SiteStatistics();
+        jdbcTemplate.query("SELECT i.page_id, SUM(i.`rank`) FROM `index` i JOIN page p ON p.id = i.page_id" +
+                " WHERE p.site_id = ? GROUP BY i.page_id", rs -> {
+            siteStatistics.put(rs.getInt(1), rs.getInt(2));
+        }, siteId);
+        return siteStatistics;
+    }
+
+    private static final class SiteStatistics {
+        private final IntFloatMap lengths = new IntFloatMap();
+        private long totalLength;
+
+        private synchronized void put(int pageId, int length) {
+            totalLength += length - (long) lengths.get(pageId, 0);
+            lengths.put(pageId, length);
+        }
+
+        private synchronized void remove(int pageId) {
+            totalLength -= (long) lengths.remove(pageId, 0);
+        }
+
+        private synchronized int documentCount() {
+            return lengths.size();
+        }
+
+        private synchronized float averageLength() {
+            return lengths.isEmpty() ? 0 : (float) totalLength / lengths.size();
+        }
+
+        private synchronized float[] lengths(int[] pageIds) {
+            float average = averageLength();
+            float[] result = new float[pageIds.length];
+            for (int i = 0; i < pageIds.length; i++) {
+                result[i] = lengths.get(pageIds[i], average);
+            }
+            return result;
+        }
+    }
+}
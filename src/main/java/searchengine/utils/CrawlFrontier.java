@@ -0,0 +1,160 @@
+package searchengine.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.CrawlerSettings;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Граница обхода одного сайта: общее множество посещённых путей (64-битные хэши),
+ * очередь загрузок с паузой между запросами к одному хосту.
+ * Пауза выдерживается планировщиком, а загрузка выполняется на отдельном исполнителе.
+ * Страница считается обработанной, когда следующая стадия вызовет {@link #finishPage()}.
+ */
+@Slf4j
+public class CrawlFrontier {
+    private final String siteUrl;
+    private final AtomicBoolean stopRequested;
+    private final CrawlerSettings crawlerSettings;
+    private final Executor fetchExecutor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Set<Long> visitedPaths = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicLong> nextFetchTimes = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingPages = new AtomicInteger();
+    private final AtomicLong processedPages = new AtomicLong();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile boolean truncated;
+    private Predicate<String> pageFetcher;
+    private long startTime;
+
+    public CrawlFrontier(String siteUrl, AtomicBoolean stopRequested, CrawlerSettings crawlerSettings,
+                         Executor fetchExecutor) {
+        this.siteUrl = siteUrl;
+        this.stopRequested = stopRequested;
+        this.crawlerSettings = crawlerSettings;
+        this.fetchExecutor = fetchExecutor;
+    }
+
+    public boolean start(String rootUrl, Predicate<String> pageFetcher) {
+        this.pageFetcher = pageFetcher;
+        this.startTime = System.nanoTime();
+        return submit(rootUrl);
+    }
+
+    public void awaitCompletion(Runnable progressReporter) throws InterruptedException {
+        try {
+            while (!completed.await(crawlerSettings.getProgressIntervalMs(), TimeUnit.MILLISECONDS)) {
+                if (stopRequested.get()) {
+                    log.info("Обход сайта {} остановлен, задач в очереди: {}", siteUrl, pendingPages.get());
+                    break;
+                }
+                progressReporter.run();
+            }
+        } finally {
+            scheduler.shutdownNow();
+            progressReporter.run();
+        }
+    }
+
+    public boolean submit(String url) {
+        if (!url.startsWith(siteUrl) || stopRequested.get()) {
+            return false;
+        }
+        URL pageUrl;
+        try {
+            pageUrl = new URL(url);
+        } catch (MalformedURLException e) {
+            log.debug("Некорректный URL пропущен: {}", url);
+            return false;
+        }
+        String path = pageUrl.getPath().isEmpty() ? "/" : pageUrl.getPath();
+        if (visitedPaths.size() >= crawlerSettings.getMaxPages()) {
+            truncated = true;
+            return false;
+        }
+        if (!visitedPaths.add(hash(path))) {
+            return false;
+        }
+
+        String normalizedUrl = pageUrl.getProtocol() + "://" + pageUrl.getAuthority() + path;
+        long delay = reserveFetchSlot(pageUrl.getHost());
+        pendingPages.incrementAndGet();
+        try {
+            scheduler.schedule(() -> dispatch(normalizedUrl), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            finishPage();
+            return false;
+        }
+        return true;
+    }
+
+    public void finishPage() {
+        processedPages.incrementAndGet();
+        if (pendingPages.decrementAndGet() == 0) {
+            completed.countDown();
+        }
+    }
+
+    public long getProcessedPages() {
+        return processedPages.get();
+    }
+
+    public int getPendingPages() {
+        return pendingPages.get();
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public double getPagesPerSecond() {
+        double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+        return seconds > 0 ? processedPages.get() / seconds : 0;
+    }
+
+    private void dispatch(String url) {
+        try {
+            fetchExecutor.execute(() -> fetch(url));
+        } catch (RejectedExecutionException e) {
+            finishPage();
+        }
+    }
+
+    private void fetch(String url) {
+        boolean handedOver = false;
+        try {
+            handedOver = !stopRequested.get() && pageFetcher.test(url);
+        } catch (Exception e) {
+            log.error("Ошибка обхода URL: {}. Сообщение: {}", url, e.getMessage());
+        } finally {
+            if (!handedOver) {
+                finishPage();
+            }
+        }
+    }
+
+    private long reserveFetchSlot(String host) {
+        long interval = TimeUnit.MILLISECONDS.toNanos(crawlerSettings.getPolitenessDelayMs());
+        long now = System.nanoTime();
+        long slot = nextFetchTimes.computeIfAbsent(host, key -> new AtomicLong(now))
+                .getAndAccumulate(now, (next, current) -> Math.max(next, current) + interval);
+        return Math.max(0, slot - now);
+    }
+
+    private static long hash(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,425 @@
+package searchengine.utils;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.indexing.CrawledPage;
+import searchengine.dto.indexing.PageFingerprint;
+import searchengine.model.SiteModel;
+import searchengine.model.Status;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Конвейер индексации одного сайта: загрузка → разбор HTML → лемматизация → пакетная запись в БД.
+ * Стадии связаны ограниченными очередями, поэтому медленная стадия притормаживает предыдущие,
+ * а размер пула каждой стадии задаётся отдельно в {@link CrawlerSettings}.
+ * При повторном обходе известные страницы запрашиваются условно и не изменившиеся
+ * не доходят до лемматизации и записи.
+ */
+@Slf4j
+public class CrawlPipeline {
+    private static final long WRITE_POLL_MS = 100;
+
+    private final SiteModel siteModel;
+    private final AtomicBoolean stopRequested;
+    private final CrawlerSettings crawlerSettings;
+    private final PageFetcher pageFetcher;
+    private final PageManager pageManager;
+    private final FinderLemma finderLemmaService;
+    private final TextAnalyzer textAnalyzer;
+    private final BlockingQueue<FetchedPage> parseQueue;
+    private final BlockingQueue<CrawledPage> lemmaQueue;
+    private final BlockingQueue<CrawledPage> writeQueue;
+    private final ExecutorService fetchExecutor;
+    private final ExecutorService parseExecutor;
+    private final ExecutorService lemmaExecutor;
+    private final ExecutorService writeExecutor;
+    private final CrawlFrontier crawlFrontier;
+    private final Map<String, PageFingerprint> knownPages;
+    private final Map<String, PageFingerprint> unvisitedPages;
+    private final AtomicLong unchangedPages = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+    private final Timer fetchTimer;
+    private final Timer parseTimer;
+    private final Timer lemmatizeTimer;
+    private final Timer writeTimer;
+    private final List<Meter> queueGauges;
+    private volatile boolean writeQueueClosed;
+
+    public CrawlPipeline(SiteModel siteModel, AtomicBoolean stopRequested, CrawlerSettings crawlerSettings,
+                         PageFetcher pageFetcher, FetchExecutorFactory fetchExecutorFactory,
+                         PageManager pageManager, FinderLemma finderLemmaService, TextAnalyzer textAnalyzer,
+                         Map<String, PageFingerprint> knownPages, MeterRegistry meterRegistry) {
+        this.siteModel = siteModel;
+        this.stopRequested = stopRequested;
+        this.crawlerSettings = crawlerSettings;
+        this.pageFetcher = pageFetcher;
+        this.pageManager = pageManager;
+        this.finderLemmaService = finderLemmaService;
+        this.textAnalyzer = textAnalyzer;
+        this.parseQueue = new ArrayBlockingQueue<>(crawlerSettings.getQueueCapacity());
+        this.lemmaQueue = new ArrayBlockingQueue<>(crawlerSettings.getQueueCapacity());
+        this.writeQueue = new ArrayBlockingQueue<>(crawlerSettings.getQueueCapacity());
+        this.fetchExecutor = fetchExecutorFactory.create(siteModel.getUrl(), crawlerSettings.getFetchers());
+        this.parseExecutor = newStagePool("parse", crawlerSettings.getParsers());
+        this.lemmaExecutor = newStagePool("lemma", crawlerSettings.getLemmatizers());
+        this.writeExecutor = newStagePool("write", crawlerSettings.getWriters());
+        this.crawlFrontier = new CrawlFrontier(siteModel.getUrl(), stopRequested, crawlerSettings, fetchExecutor);
+        this.knownPages = knownPages;
+        this.unvisitedPages = new ConcurrentHashMap<>(knownPages);
+        this.meterRegistry = meterRegistry;
+        this.fetchTimer = meterRegistry.timer("crawl.stage", "stage", "fetch");
+        this.parseTimer = meterRegistry.timer("crawl.stage", "stage", "parse");
+        this.lemmatizeTimer = meterRegistry.timer("crawl.stage", "stage", "lemmatize");
+        this.writeTimer = meterRegistry.timer("crawl.stage", "stage", "write");
+        this.queueGauges = List.of(queueGauge("parse", parseQueue), queueGauge("lemmatize", lemmaQueue),
+                queueGauge("write", writeQueue));
+    }
+
+    public void crawl(String rootUrl) throws InterruptedException {
+        startStage(parseExecutor, crawlerSettings.getParsers(), parseQueue, this::parse);
+        startStage(lemmaExecutor, crawlerSettings.getLemmatizers(), lemmaQueue, this::lemmatize);
+        startWriters();
+        boolean completed = false;
+        try {
+            if (crawlFrontier.start(rootUrl, this::fetch)) {
+                crawlFrontier.awaitCompletion(this::logProgress);
+            }
+            completed = !stopRequested.get();
+        } finally {
+            shutdown(completed);
+        }
+    }
+
+    public int getParseQueueDepth() {
+        return parseQueue.size();
+    }
+
+    public int getLemmaQueueDepth() {
+        return lemmaQueue.size();
+    }
+
+    public int getWriteQueueDepth() {
+        return writeQueue.size();
+    }
+
+    public CrawlFrontier getCrawlFrontier() {
+        return crawlFrontier;
+    }
+
+    public long getUnchangedPages() {
+        return unchangedPages.get();
+    }
+
+    /**
+     * Страницы из индекса, которые не удалось получить при завершённом обходе.
+     * Если обход остановлен или упёрся в лимит страниц, список пуст.
+     */
+    public List<Integer> getUnvisitedPageIds() {
+        if (stopRequested.get() || crawlFrontier.isTruncated()) {
+            return List.of();
+        }
+        return unvisitedPages.values().stream()
+                .map(PageFingerprint::id)
+                .toList();
+    }
+
+    private boolean fetch(String url) {
+        String path = pathOf(url);
+        PageFingerprint previous = knownPages.get(path);
+        Connection.Response response;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            response = pageFetcher.fetch(url, previous);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (HttpStatusException e) {
+            if (isGone(e.getStatusCode())) {
+                log.info("Страница удалена с сайта ({}): {}", e.getStatusCode(), url);
+            } else {
+                keepIndexed(path);
+                reportFetchError(url, e);
+            }
+            return false;
+        } catch (IOException e) {
+            keepIndexed(path);
+            reportFetchError(url, e);
+            return false;
+        } finally {
+            sample.stop(fetchTimer);
+        }
+        if (previous != null && PageFetcher.isNotModified(response)) {
+            unvisitedPages.remove(path);
+            return handOver(new FetchedPage(url, response, previous, previous.contentHash()));
+        }
+        String contentType = response.contentType();
+        log.debug("Тип контента для url: {} {}", url, contentType);
+        if (contentType == null || !contentType.startsWith("text/")) {
+            log.warn("Неподдерживаемый тип контента для url: {} {}", url, contentType);
+            return false;
+        }
+        unvisitedPages.remove(path);
+        return handOver(new FetchedPage(url, response, previous, PageFetcher.contentHash(response.bodyAsBytes())));
+    }
+
+    /**
+     * Удалённой считается только страница, на которую сервер ответил 404 или 410.
+     */
+    private static boolean isGone(int statusCode) {
+        return statusCode == HttpURLConnection.HTTP_NOT_FOUND || statusCode == HttpURLConnection.HTTP_GONE;
+    }
+
+    /**
+     * Временная ошибка загрузки не повод удалять страницу из индекса: остаётся прежняя копия.
+     */
+    private void keepIndexed(String path) {
+        unvisitedPages.remove(path);
+    }
+
+    private void reportFetchError(String url, IOException e) {
+        log.error("Ошибка при обработке URL: {}. Сообщение: {}", url, e.getMessage());
+        // При обновлении на месте сайт остаётся в поиске, ошибка одной страницы его не роняет
+        if (knownPages.isEmpty()) {
+            pageManager.updateSiteStatus(siteModel, Status.FAILED, "Ошибка при обработке URL");
+        }
+    }
+
+    private boolean handOver(FetchedPage fetchedPage) {
+        try {
+            parseQueue.put(fetchedPage);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void parse(FetchedPage fetchedPage) throws IOException, InterruptedException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CrawledPage page = parsePage(fetchedPage);
+        sample.stop(parseTimer);
+        if (page != null) {
+            lemmaQueue.put(page);
+        }
+    }
+
+    /**
+     * Разбирает загруженную страницу; для не изменившейся возвращает null.
+     */
+    private CrawledPage parsePage(FetchedPage fetchedPage) throws IOException {
+        Connection.Response response = fetchedPage.response();
+        PageFingerprint previous = fetchedPage.previous();
+        if (previous != null && PageFetcher.isNotModified(response)) {
+            // Ссылки не изменившейся страницы берём из сохранённой копии
+            submitLinks(Jsoup.parse(StringUtils.defaultString(pageManager.loadContent(previous.id())),
+                    fetchedPage.url()));
+            skipUnchanged(fetchedPage.url());
+            return null;
+        }
+
+        Document document = response.parse();
+        submitLinks(document);
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        if (previous != null && fetchedPage.contentHash().equals(previous.contentHash())) {
+            if (!Objects.equals(etag, previous.etag()) || !Objects.equals(lastModified, previous.lastModified())) {
+                pageManager.updateValidators(previous.id(), etag, lastModified);
+            }
+            skipUnchanged(fetchedPage.url());
+            return null;
+        }
+        return new CrawledPage(fetchedPage.url(), response.statusCode(), document.html(),
+                PageManager.extractTitle(document), PageManager.extractPlainText(document), etag, lastModified,
+                fetchedPage.contentHash(), previous == null ? null : previous.id(), Map.of());
+    }
+
+    private void submitLinks(Document document) {
+        for (Element element : document.select("a[href]")) {
+            String absUrl = element.absUrl("href");
+            if (crawlFrontier.submit(absUrl)) {
+                log.debug("Добавлен в очередь URL: {}", absUrl);
+            }
+        }
+    }
+
+    private void skipUnchanged(String url) {
+        log.debug("Страница не изменилась: {}", url);
+        unchangedPages.incrementAndGet();
+        crawlFrontier.finishPage();
+    }
+
+    private void lemmatize(CrawledPage page) throws InterruptedException {
+        Map<String, Integer> lemmaCounts = lemmatizeTimer.record(() -> textAnalyzer.analyze(
+                StringUtils.defaultString(page.title()) + " " + StringUtils.defaultString(page.text())));
+        writeQueue.put(page.withLemmaCounts(lemmaCounts));
+    }
+
+    private void write(List<CrawledPage> batch) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            finderLemmaService.savePages(siteModel, batch);
+            log.debug("Произведена запись страниц: {}", batch.size());
+        } catch (DataAccessException e) {
+            log.warn("Пачка из {} страниц не сохранена, запись по одной: {}", batch.size(), e.getMessage());
+            batch.forEach(this::savePage);
+        } catch (Exception e) {
+            log.error("Ошибка записи пачки страниц: {}", e.getMessage());
+        } finally {
+            sample.stop(writeTimer);
+            batch.forEach(page -> crawlFrontier.finishPage());
+        }
+    }
+
+    private void savePage(CrawledPage page) {
+        try {
+            finderLemmaService.savePages(siteModel, List.of(page));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Ошибка при сохранении страницы. Дубликат страницы: {}", page.url());
+        } catch (Exception e) {
+            log.error("Ошибка при сохранении страницы: {}. Сообщение: {}", page.url(), e.getMessage());
+        }
+    }
+
+    private <T> void startStage(ExecutorService executor, int workers, BlockingQueue<T> queue,
+                                StageHandler<T> handler) {
+        for (int i = 0; i < Math.max(1, workers); i++) {
+            executor.execute(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        T item = queue.take();
+                        try {
+                            handler.handle(item);
+                        } catch (InterruptedException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            log.error("Ошибка стадии конвейера: {}", e.getMessage());
+                            crawlFrontier.finishPage();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+    }
+
+    private void startWriters() {
+        for (int i = 0; i < Math.max(1, crawlerSettings.getWriters()); i++) {
+            writeExecutor.execute(() -> {
+                List<CrawledPage> batch = new ArrayList<>(crawlerSettings.getWriteBatchSize());
+                while (!Thread.currentThread().isInterrupted()) {
+                    CrawledPage page;
+                    try {
+                        page = writeQueue.poll(WRITE_POLL_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (page == null) {
+                        if (writeQueueClosed && writeQueue.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(page);
+                    writeQueue.drainTo(batch, Math.max(0, crawlerSettings.getWriteBatchSize() - 1));
+                    write(batch);
+                    batch.clear();
+                }
+            });
+        }
+    }
+
+    private void logProgress() {
+        log.info("Сайт {}: обработано {} (без изменений {}), в работе {}, {} стр/с; загрузок {}; " +
+                        "очереди: разбор {}, леммы {}, запись {}",
+                siteModel.getUrl(), crawlFrontier.getProcessedPages(), unchangedPages.get(),
+                crawlFrontier.getPendingPages(),
+                String.format("%.1f", crawlFrontier.getPagesPerSecond()), pageFetcher.getInFlight(),
+                parseQueue.size(), lemmaQueue.size(), writeQueue.size());
+    }
+
+    /**
+     * При штатном завершении сначала останавливаются загрузка, разбор и лемматизация, затем запись
+     * дописывает свою очередь до конца, и конвейер ждёт её без ограничения по времени.
+     * При остановке индексации все стадии прерываются сразу.
+     */
+    private void shutdown(boolean completed) throws InterruptedException {
+        List<ExecutorService> producers = List.of(fetchExecutor, parseExecutor, lemmaExecutor);
+        producers.forEach(ExecutorService::shutdownNow);
+        if (completed) {
+            for (ExecutorService executor : producers) {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            writeQueueClosed = true;
+            writeExecutor.shutdown();
+            writeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } else {
+            writeExecutor.shutdownNow();
+            writeExecutor.awaitTermination(crawlerSettings.getProgressIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+        queueGauges.forEach(meterRegistry::remove);
+        parseQueue.clear();
+        lemmaQueue.clear();
+        writeQueue.clear();
+    }
+
+    private static String pathOf(String url) {
+        try {
+            String path = new URL(url).getPath();
+            return path.isEmpty() ? "/" : path;
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    private Meter queueGauge(String stage, BlockingQueue<?> queue) {
+        return Gauge.builder("crawl.queue.depth", queue, BlockingQueue::size)
+                .tags("site", siteModel.getUrl(), "stage", stage)
+                .register(meterRegistry);
+    }
+
+    private ExecutorService newStagePool(String stage, int threads) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("crawl-" + stage + "-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(Math.max(1, threads), threadFactory);
+    }
+
+    @FunctionalInterface
+    private interface StageHandler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    private record FetchedPage(String url, Connection.Response response, PageFingerprint previous,
+                               String contentHash) {
+    }
+}
@@ -0,0 +1,12 @@
+package searchengine.utils;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Создаёт исполнитель стадии загрузки для обхода одного сайта.
+ * Реализация выбирается свойством {@code indexing-settings.crawler.fetch-mode}.
+ */
+public interface FetchExecutorFactory {
+
+    ExecutorService create(String siteUrl, int fetchers);
+}
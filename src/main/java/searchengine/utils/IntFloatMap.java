@@ -0,0 +1,187 @@
+package searchengine.utils;
+
+/**
+ * Хэш-таблица int → float с открытой адресацией и линейным пробированием, без упаковки ключей и значений.
+ * Ключ 0 хранится отдельно, потому что 0 в массиве ключей означает пустую ячейку.
+ */
+public final class IntFloatMap {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private float[] values;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private float zeroValue;
+
+    public IntFloatMap() {
+        this(16);
+    }
+
+    public IntFloatMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new int[capacity];
+        values = new float[capacity];
+        mask = capacity - 1;
+    }
+
+    public void put(int key, float value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int slot = slot(key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size > keys.length * LOAD_FACTOR) {
+                rehash(keys.length << 1);
+            }
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    public void addTo(int key, float delta) {
+        put(key, get(key, 0) + delta);
+    }
+
+    public float get(int key, float defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = slot(key);
+        return keys[slot] == 0 ? defaultValue : values[slot];
+    }
+
+    /**
+     * Удаляет ключ со сдвигом следующих элементов цепочки назад, чтобы не оставлять «надгробий».
+     */
+    public float remove(int key, float defaultValue) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return defaultValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        int gap = slot(key);
+        if (keys[gap] == 0) {
+            return defaultValue;
+        }
+        float removed = values[gap];
+        for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+        return removed;
+    }
+
+    public boolean containsKey(int key) {
+        return key == 0 ? hasZeroKey : keys[slot(key)] != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public float max() {
+        float max = hasZeroKey ? zeroValue : Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0 && values[i] > max) {
+                max = values[i];
+            }
+        }
+        return max;
+    }
+
+    public void divideAll(float divisor) {
+        zeroValue /= divisor;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                values[i] /= divisor;
+            }
+        }
+    }
+
+    public void forEach(Consumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int[] keys() {
+        int[] result = new int[size];
+        int index = 0;
+        if (hasZeroKey) {
+            result[index++] = 0;
+        }
+        for (int key : keys) {
+            if (key != 0) {
+                result[index++] = key;
+            }
+        }
+        return result;
+    }
+
+    private int slot(int key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        float[] oldValues = values;
+        keys = new int[capacity];
+        values = new float[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> builder.append(builder.length() > 1 ? ", " : "").append(key).append('=').append(value));
+        return builder.append('}').toString();
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(int key, float value);
+    }
+}
@@ -0,0 +1,299 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.BatchSettings;
+import searchengine.model.PageModel;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class LemmaBatchWriter {
+    private final JdbcTemplate jdbcTemplate;
+    private final BatchSettings batchSettings;
+    private final LemmaCache lemmaCache;
+    private final CorpusStatistics corpusStatistics;
+
+    private static final String UPSERT_LEMMA_PREFIX = "INSERT INTO lemma (lemma, site_id, frequency) VALUES ";
+    private static final String UPSERT_LEMMA_ROW = "(?, ?, 1)";
+    private static final String UPSERT_LEMMA_SUFFIX = " ON DUPLICATE KEY UPDATE frequency = frequency + 1";
+    private static final String INSERT_INDEX_PREFIX = "INSERT INTO `index` (page_id, lemma_id, `rank`) VALUES ";
+    private static final String INSERT_INDEX_ROW = "(?, ?, ?)";
+    private static final String NO_INDEX_ROWS = " AND NOT EXISTS (SELECT 1 FROM `index` i WHERE i.lemma_id = lemma.id)";
+
+    @Transactional
+    public void write(PageModel pageModel, Map<String, Integer> lemmaCountMap) {
+        holdDictionary(pageModel.getSite().getId());
+        write(pageModel, lemmaCountMap, Collections.emptyMap());
+    }
+
+    /**
+     * Переиндексация изменившейся страницы: частоты меняются только у лемм,
+     * которые появились на странице или исчезли с неё.
+     */
+    @Transactional
+    public void rewrite(PageModel pageModel, Map<String, Integer> lemmaCountMap) {
+        int siteId = pageModel.getSite().getId();
+        Map<String, Integer> orphanCandidates = holdDictionary(siteId);
+        Map<String, Integer> previousLemmas = findPageLemmas(pageModel.getId());
+        jdbcTemplate.update("DELETE FROM `index` WHERE page_id = ?", pageModel.getId());
+
+        Map<String, Integer> retainedLemmas = new HashMap<>();
+        Map<String, Integer> removedLemmas = new HashMap<>();
+        previousLemmas.forEach((lemma, id) -> (lemmaCountMap.containsKey(lemma) ? retainedLemmas : removedLemmas)
+                .put(lemma, id));
+        releaseLemmas(siteId, removedLemmas, orphanCandidates);
+        write(pageModel, lemmaCountMap, retainedLemmas);
+        log.debug("Страница {} обновлена: лемм сохранено {}, удалено {}", pageModel.getPath(),
+                retainedLemmas.size(), removedLemmas.size());
+    }
+
+    /**
+     * Снимает страницу с индекса: удаляет её строки index, уменьшает частоты её лемм
+     * и удаляет леммы, на которые больше не ссылается ни одна страница.
+     */
+    @Transactional
+    public void release(PageModel pageModel) {
+        int siteId = pageModel.getSite().getId();
+        int pageId = pageModel.getId();
+        Map<String, Integer> orphanCandidates = holdDictionary(siteId);
+        Map<String, Integer> pageLemmas = findPageLemmas(pageId);
+        jdbcTemplate.update("DELETE FROM `index` WHERE page_id = ?", pageId);
+        releaseLemmas(siteId, pageLemmas, orphanCandidates);
+        TransactionHooks.afterCommit(() -> corpusStatistics.removePage(siteId, pageId));
+    }
+
+    private void write(PageModel pageModel, Map<String, Integer> lemmaCountMap, Map<String, Integer> retainedLemmas) {
+        int siteId = pageModel.getSite().getId();
+        int pageId = pageModel.getId();
+        if (lemmaCountMap.isEmpty()) {
+            TransactionHooks.afterCommit(() -> corpusStatistics.removePage(siteId, pageId));
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, Integer> lemmaIds = new HashMap<>(lemmaCountMap.size() * 2);
+        lemmaIds.putAll(retainedLemmas);
+        List<LemmaCache.LemmaEntry> knownLemmas = new ArrayList<>();
+        // Сортировка задаёт единый порядок блокировок строк lemma между параллельными потоками
+        List<String> newLemmas = new ArrayList<>();
+        new TreeSet<>(lemmaCountMap.keySet()).stream()
+                .filter(lemma -> !retainedLemmas.containsKey(lemma))
+                .forEach(lemma -> lemmaCache.get(siteId, lemma).ifPresentOrElse(entry -> {
+                    knownLemmas.add(entry);
+                    lemmaIds.put(lemma, entry.getId());
+                }, () -> newLemmas.add(lemma)));
+
+        upsertLemmas(siteId, newLemmas);
+        Map<String, LemmaRow> insertedLemmas = findLemmas(siteId, newLemmas);
+        insertedLemmas.forEach((lemma, row) -> lemmaIds.put(lemma, row.id()));
+        insertIndexes(pageId, siteId, lemmaCountMap, lemmaIds);
+        int pageLength = lemmaCountMap.values().stream().mapToInt(Integer::intValue).sum();
+
+        TransactionHooks.afterCommit(() -> {
+            corpusStatistics.putPage(siteId, pageId, pageLength);
+            knownLemmas.forEach(entry -> lemmaCache.incrementFrequency(siteId, entry));
+            insertedLemmas.forEach((lemma, row) -> lemmaCache.put(siteId, lemma, row.id(), row.frequency()));
+        });
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.debug("Страница {}: записано лемм {} (новых {}) за {} мс", pageModel.getPath(),
+                lemmaCountMap.size(), newLemmas.size(), elapsed);
+    }
+
+    private Map<String, Integer> findPageLemmas(int pageId) {
+        Map<String, Integer> lemmaIds = new HashMap<>();
+        jdbcTemplate.query("SELECT l.id, l.lemma FROM `index` i JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id = ?",
+                rs -> {
+                    lemmaIds.put(rs.getString("lemma"), rs.getInt("id"));
+                }, pageId);
+        return lemmaIds;
+    }
+
+    /**
+     * Уменьшает частоты лемм, снятых со страницы. Леммы, оставшиеся без страниц, удаляются только после
+     * фиксации ({@link #pruneOrphans}): пока транзакция открыта, другой поток мог взять id такой леммы
+     * из кэша и записать на неё строку index.
+     */
+    private void releaseLemmas(int siteId, Map<String, Integer> removedLemmas, Map<String, Integer> orphanCandidates) {
+        if (removedLemmas.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(new TreeSet<>(removedLemmas.values()));
+        for (List<Integer> chunk : partition(ids, batchSettings.getLemmaBatchSize())) {
+            String in = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.update("UPDATE lemma SET frequency = frequency - 1 WHERE id IN (" + in + ")", chunk.toArray());
+        }
+        TransactionHooks.afterCommit(() -> removedLemmas.forEach((lemma, id) ->
+                lemmaCache.get(siteId, lemma).ifPresent(entry -> lemmaCache.adjustFrequency(entry, -1))));
+        if (orphanCandidates == null) {
+            pruneOrphans(siteId, removedLemmas);
+        } else {
+            orphanCandidates.putAll(removedLemmas);
+        }
+    }
+
+    /**
+     * Держит замок словаря сайта на чтение до завершения текущей транзакции и возвращает её кандидатов
+     * на удаление; без транзакции возвращает null. После фиксации замок отпускается и кандидаты проверяются.
+     */
+    private Map<String, Integer> holdDictionary(int siteId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        ReadWriteLock lock = lemmaCache.dictionaryLock(siteId);
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> held = (Map<String, Integer>) TransactionSynchronizationManager.getResource(lock);
+        if (held != null) {
+            return held;
+        }
+        lock.readLock().lock();
+        Map<String, Integer> orphanCandidates = new HashMap<>();
+        TransactionSynchronizationManager.bindResource(lock, orphanCandidates);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(lock);
+                lock.readLock().unlock();
+                if (status == STATUS_COMMITTED) {
+                    pruneOrphans(siteId, orphanCandidates);
+                }
+            }
+        });
+        return orphanCandidates;
+    }
+
+    /**
+     * Удаляет леммы без строк index под замком словаря на запись: незавершённых записей по сайту нет,
+     * поэтому проверка видит все строки index. Лемма сначала убирается из кэша, затем из таблицы.
+     */
+    private void pruneOrphans(int siteId, Map<String, Integer> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Lock lock = lemmaCache.dictionaryLock(siteId).writeLock();
+        lock.lock();
+        try {
+            List<Integer> ids = new ArrayList<>(new TreeSet<>(candidates.values()));
+            Set<Integer> orphanIds = new HashSet<>();
+            for (List<Integer> chunk : partition(ids, batchSettings.getLemmaBatchSize())) {
+                orphanIds.addAll(jdbcTemplate.queryForList("SELECT id FROM lemma WHERE id IN (" +
+                        String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")" + NO_INDEX_ROWS,
+                        Integer.class, chunk.toArray()));
+            }
+            if (orphanIds.isEmpty()) {
+                return;
+            }
+            List<String> orphanLemmas = new ArrayList<>();
+            candidates.forEach((lemma, id) -> {
+                if (orphanIds.contains(id)) {
+                    orphanLemmas.add(lemma);
+                }
+            });
+            lemmaCache.evict(siteId, orphanLemmas);
+            for (List<Integer> chunk : partition(new ArrayList<>(orphanIds), batchSettings.getLemmaBatchSize())) {
+                jdbcTemplate.update("DELETE FROM lemma WHERE id IN (" +
+                        String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")" + NO_INDEX_ROWS,
+                        chunk.toArray());
+            }
+            log.debug("Удалено лемм без страниц на сайте {}: {}", siteId, orphanIds.size());
+        } catch (DataAccessException e) {
+            log.warn("Леммы без страниц на сайте {} не удалены: {}", siteId, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void upsertLemmas(int siteId, List<String> lemmas) {
+        for (List<String> chunk : partition(lemmas, batchSettings.getLemmaBatchSize())) {
+            String sql = UPSERT_LEMMA_PREFIX + rows(UPSERT_LEMMA_ROW, chunk.size()) + UPSERT_LEMMA_SUFFIX;
+            Object[] args = new Object[chunk.size() * 2];
+            int i = 0;
+            for (String lemma : chunk) {
+                args[i++] = lemma;
+                args[i++] = siteId;
+            }
+            jdbcTemplate.update(sql, args);
+        }
+    }
+
+    private Map<String, LemmaRow> findLemmas(int siteId, List<String> lemmas) {
+        Map<String, LemmaRow> lemmaRows = new HashMap<>(lemmas.size() * 2);
+        for (List<String> chunk : partition(lemmas, batchSettings.getLemmaBatchSize())) {
+            String sql = "SELECT id, lemma, frequency FROM lemma WHERE site_id = ? AND lemma IN (" +
+                    String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = siteId;
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i + 1] = chunk.get(i);
+            }
+            jdbcTemplate.query(sql, rs -> {
+                lemmaRows.put(rs.getString("lemma"), new LemmaRow(rs.getInt("id"), rs.getInt("frequency")));
+            }, args);
+        }
+        return lemmaRows;
+    }
+
+    private void insertIndexes(int pageId, int siteId, Map<String, Integer> lemmaCountMap, Map<String, Integer> lemmaIds) {
+        List<Object[]> rows = new ArrayList<>(lemmaCountMap.size());
+        lemmaCountMap.forEach((lemma, count) -> {
+            Integer lemmaId = lemmaIds.get(lemma);
+            if (lemmaId == null) {
+                // Сопоставление строк в MySQL может склеить леммы (например, «е» и «ё»)
+                lemmaId = findLemmaIdByCollation(siteId, lemma);
+            }
+            if (lemmaId != null) {
+                rows.add(new Object[]{pageId, lemmaId, count.floatValue()});
+            }
+        });
+
+        for (List<Object[]> chunk : partition(rows, batchSettings.getIndexBatchSize())) {
+            String sql = INSERT_INDEX_PREFIX + rows(INSERT_INDEX_ROW, chunk.size());
+            Object[] args = new Object[chunk.size() * 3];
+            int i = 0;
+            for (Object[] row : chunk) {
+                args[i++] = row[0];
+                args[i++] = row[1];
+                args[i++] = row[2];
+            }
+            jdbcTemplate.update(sql, args);
+        }
+    }
+
+    private Integer findLemmaIdByCollation(int siteId, String lemma) {
+        List<Integer> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM lemma WHERE site_id = ? AND lemma = ?", Integer.class, siteId, lemma);
+        if (ids.isEmpty()) {
+            log.warn("Не найден идентификатор леммы '{}' для сайта {}", lemma, siteId);
+            return null;
+        }
+        return ids.get(0);
+    }
+
+    private static String rows(String row, int count) {
+        return String.join(", ", Collections.nCopies(count, row));
+    }
+
+    private static <T> List<List<T>> partition(List<T> list, int size) {
+        int chunkSize = Math.max(1, size);
+        List<List<T>> chunks = new ArrayList<>((list.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < list.size(); from += chunkSize) {
+            chunks.add(list.subList(from, Math.min(list.size(), from + chunkSize)));
+        }
+        return chunks;
+    }
+
+    private record LemmaRow(int id, int frequency) {
+    }
+}
@@ -0,0 +1,158 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Словарь лемм сайта в памяти: лемма → (id, frequency).
+ * Приращения frequency копятся в памяти и периодически сбрасываются в таблицу lemma.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class LemmaCache {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, SiteDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        jdbcTemplate.queryForList("SELECT id FROM site WHERE active", Integer.class)
+                .forEach(this::dictionary);
+        log.info("Словарь лемм загружен для сайтов: {}", dictionaries.size());
+    }
+
+    public Optional<LemmaEntry> get(int siteId, String lemma) {
+        return Optional.ofNullable(dictionary(siteId).entries.get(lemma));
+    }
+
+    /**
+     * Число лемм сайта: словарь повторяет таблицу lemma, поэтому COUNT по ней не нужен.
+     */
+    public int lemmaCount(int siteId) {
+        return dictionary(siteId).entries.size();
+    }
+
+    public void put(int siteId, String lemma, int id, int frequency) {
+        dictionary(siteId).entries.merge(lemma, new LemmaEntry(id, frequency), (existing, loaded) -> {
+            existing.frequency.accumulateAndGet(loaded.getFrequency(), Math::max);
+            return existing;
+        });
+    }
+
+    public void incrementFrequency(int siteId, LemmaEntry entry) {
+        entry.frequency.incrementAndGet();
+        if (entry.pendingDelta.getAndIncrement() == 0) {
+            dictionary(siteId).dirty.add(entry);
+        }
+    }
+
+    /**
+     * Учитывает в памяти изменение частоты, которое уже записано в БД.
+     */
+    public void adjustFrequency(LemmaEntry entry, int delta) {
+        entry.frequency.addAndGet(delta);
+    }
+
+    public void evict(int siteId, Collection<String> lemmas) {
+        SiteDictionary dictionary = dictionaries.get(siteId);
+        if (dictionary != null) {
+            lemmas.forEach(lemma -> {
+                LemmaEntry entry = dictionary.entries.remove(lemma);
+                if (entry != null) {
+                    dictionary.dirty.remove(entry);
+                }
+            });
+        }
+    }
+
+    /**
+     * Замок словаря сайта: запись лемм держит его на чтение до конца своей транзакции,
+     * удаление лемм без страниц берёт его на запись, когда незавершённых записей по сайту нет.
+     */
+    public ReadWriteLock dictionaryLock(int siteId) {
+        return dictionary(siteId).lock;
+    }
+
+    public void evictSite(int siteId) {
+        dictionaries.remove(siteId);
+        log.info("Словарь лемм сброшен для сайта: {}", siteId);
+    }
+
+    @Scheduled(fixedDelayString = "${indexing-settings.batch.flush-interval-ms:5000}")
+    public void flush() {
+        dictionaries.keySet().forEach(this::flush);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public void flush(int siteId) {
+        SiteDictionary dictionary = dictionaries.get(siteId);
+        if (dictionary == null || dictionary.dirty.isEmpty()) {
+            return;
+        }
+        List<Object[]> deltas = new ArrayList<>();
+        for (Iterator<LemmaEntry> iterator = dictionary.dirty.iterator(); iterator.hasNext(); ) {
+            LemmaEntry entry = iterator.next();
+            iterator.remove();
+            int delta = entry.pendingDelta.getAndSet(0);
+            if (delta != 0) {
+                deltas.add(new Object[]{delta, entry.getId()});
+            }
+        }
+        if (!deltas.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = frequency + ? WHERE id = ?", deltas);
+            log.debug("Сброшены частоты лемм сайта {}: {}", siteId, deltas.size());
+        }
+    }
+
+    private SiteDictionary dictionary(int siteId) {
+        return dictionaries.computeIfAbsent(siteId, this::load);
+    }
+
+    private SiteDictionary load(int siteId) {
+        SiteDictionary dictionary = new SiteDictionary();
+        jdbcTemplate.query("SELECT id, lemma, frequency FROM lemma WHERE site_id = ?", rs -> {
+            dictionary.entries.put(rs.getString("lemma"), new LemmaEntry(rs.getInt("id"), rs.getInt("frequency")));
+        }, siteId);
+        return dictionary;
+    }
+
+    private static class SiteDictionary {
+        private final Map<String, LemmaEntry> entries = new ConcurrentHashMap<>();
+        private final Set<LemmaEntry> dirty = ConcurrentHashMap.newKeySet();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    }
+
+    public static class LemmaEntry {
+        @Getter
+        private final int id;
+        private final AtomicInteger frequency;
+        private final AtomicInteger pendingDelta = new AtomicInteger();
+
+        private LemmaEntry(int id, int frequency) {
+            this.id = id;
+            this.frequency = new AtomicInteger(frequency);
+        }
+
+        public int getFrequency() {
+            return frequency.get();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Переносит HTML из устаревшей колонки page.content в сжатую таблицу page_content
+ * и удаляет колонку. Перенос идёт порциями по id и безопасно возобновляется после перезапуска.
+ * Выполняется при создании контекста, после того как Hibernate создал page_content, но до запуска
+ * веб-сервера: пока HTML не перенесён, обход и поиск не должны читать пустое содержимое.
+ */
+@Slf4j
+@Service
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class PageContentMigration {
+    private static final int CHUNK_ROWS = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        if (!hasLegacyColumn()) {
+            return;
+        }
+        // Новые страницы пишутся уже без этой колонки, поэтому она не должна мешать вставке
+        jdbcTemplate.execute("ALTER TABLE page MODIFY content MEDIUMTEXT NULL");
+        long migrated = 0;
+        int lastId = 0;
+        while (true) {
+            List<Object[]> rows = new ArrayList<>(CHUNK_ROWS);
+            jdbcTemplate.query("SELECT id, content FROM page WHERE id > ? AND content IS NOT NULL ORDER BY id LIMIT ?",
+                    rs -> {
+                        rows.add(new Object[]{rs.getInt(1), ContentCodec.compress(rs.getString(2))});
+                    }, lastId, CHUNK_ROWS);
+            if (rows.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("INSERT IGNORE INTO page_content (page_id, content) VALUES (?, ?)", rows);
+            lastId = (int) rows.get(rows.size() - 1)[0];
+            migrated += rows.size();
+            log.info("Перенос содержимого страниц: {} (до id {})", migrated, lastId);
+        }
+        jdbcTemplate.execute("ALTER TABLE page DROP COLUMN content");
+        log.info("Содержимое страниц перенесено в page_content: {}", migrated);
+    }
+
+    private boolean hasLegacyColumn() {
+        Integer columns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns" +
+                " WHERE table_schema = DATABASE() AND table_name = 'page' AND column_name = 'content'", Integer.class);
+        return columns != null && columns > 0;
+    }
+}
@@ -0,0 +1,62 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Число страниц сайта в памяти. Считается из БД один раз при старте и дальше меняется индексатором
+ * после фиксации транзакций, поэтому статистика не выполняет COUNT по таблице page.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class PageCounter {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        jdbcTemplate.query("SELECT s.id, COUNT(p.id) FROM site s LEFT JOIN page p ON p.site_id = s.id" +
+                " WHERE s.active GROUP BY s.id", rs -> {
+            counters.put(rs.getInt(1), new AtomicInteger(rs.getInt(2)));
+        });
+        log.info("Счётчики страниц загружены для сайтов: {}", counters.size());
+    }
+
+    public int count(int siteId) {
+        return counter(siteId).get();
+    }
+
+    /**
+     * Начинает счёт с нуля для только что созданного сайта, у которого ещё нет страниц.
+     */
+    public void register(int siteId) {
+        counters.put(siteId, new AtomicInteger());
+    }
+
+    public void pageAdded(int siteId) {
+        TransactionHooks.afterCommit(() -> counter(siteId).incrementAndGet());
+    }
+
+    public void pageRemoved(int siteId) {
+        TransactionHooks.afterCommit(() -> counter(siteId).decrementAndGet());
+    }
+
+    public void evictSite(int siteId) {
+        counters.remove(siteId);
+    }
+
+    private AtomicInteger counter(int siteId) {
+        return counters.computeIfAbsent(siteId, id -> new AtomicInteger(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM page WHERE site_id = ?", Integer.class, id)));
+    }
+}
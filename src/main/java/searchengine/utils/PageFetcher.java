@@ -0,0 +1,89 @@
+package searchengine.utils;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.indexing.PageFingerprint;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HTTP-загрузка страниц с ограничением числа одновременных запросов:
+ * общим для всех сайтов и отдельным для каждого хоста.
+ * Тело ответа читается целиком, чтобы разбор не держал соединение.
+ */
+@Component
+public class PageFetcher {
+    private final CrawlerSettings crawlerSettings;
+    private final Semaphore globalPermits;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PageFetcher(CrawlerSettings crawlerSettings) {
+        this.crawlerSettings = crawlerSettings;
+        this.globalPermits = new Semaphore(Math.max(1, crawlerSettings.getMaxInFlight()), true);
+    }
+
+    public Connection.Response fetch(String url) throws IOException, InterruptedException {
+        return fetch(url, null);
+    }
+
+    /**
+     * Условный запрос: при известных ETag или Last-Modified сервер может ответить 304 без тела.
+     */
+    public Connection.Response fetch(String url, PageFingerprint previous) throws IOException, InterruptedException {
+        Semaphore hostLimit = hostPermits.computeIfAbsent(hostOf(url),
+                host -> new Semaphore(Math.max(1, crawlerSettings.getMaxInFlightPerSite()), true));
+        hostLimit.acquire();
+        try {
+            globalPermits.acquire();
+            try {
+                Connection connection = Jsoup.connect(url)
+                        .userAgent(crawlerSettings.getUserAgent())
+                        .referrer(crawlerSettings.getReferrer());
+                if (previous != null && previous.etag() != null) {
+                    connection.header("If-None-Match", previous.etag());
+                }
+                if (previous != null && previous.lastModified() != null) {
+                    connection.header("If-Modified-Since", previous.lastModified());
+                }
+                return connection.execute().bufferUp();
+            } finally {
+                globalPermits.release();
+            }
+        } finally {
+            hostLimit.release();
+        }
+    }
+
+    public int getInFlight() {
+        return Math.max(1, crawlerSettings.getMaxInFlight()) - globalPermits.availablePermits();
+    }
+
+    public static boolean isNotModified(Connection.Response response) {
+        return response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    public static String contentHash(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hostOf(String url) throws MalformedURLException {
+        return new URL(url).getHost();
+    }
+}
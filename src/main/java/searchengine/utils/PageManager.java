@@ -1,17 +1,26 @@
 package searchengine.utils;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.CrawledPage;
 import searchengine.model.*;
+import searchengine.repositories.PageContentRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 @Service
 @Slf4j
@@ -19,7 +28,13 @@ import java.time.LocalDateTime;
 public class PageManager {
 
     private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
+    private final MeterRegistry meterRegistry;
     private final SiteRepository siteRepository;
+    private final PageCounter pageCounter;
+    private static final int TITLE_MAX_LENGTH = 512;
+    private static final Pattern NON_WORD_CHARS = Pattern.compile("[^А-Яа-яЁёA-Za-z0-9\\s]");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
 
     @Transactional
     public void updateSiteStatus(SiteModel siteModel, Status status, String errorMessage) {
@@ -30,8 +45,15 @@ public class PageManager {
     }
 
     @Transactional
-    public PageModel createPageModel(int code, String content, String url, SiteModel siteModel) throws MalformedURLException {
-        URL linkUrl = new URL(url);
+    public PageModel createPageModel(int code, Document document, String url, SiteModel siteModel) throws MalformedURLException {
+        return createPageModel(new CrawledPage(url, code, document.html(), extractTitle(document),
+                extractPlainText(document), null, null, null, null, Map.of()), siteModel);
+    }
+
+    @Transactional
+    public PageModel createPageModel(CrawledPage page, SiteModel siteModel) throws MalformedURLException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        URL linkUrl = new URL(page.url());
         String path = linkUrl.getPath();
 
         if (path.isEmpty()) {
@@ -40,12 +62,61 @@ public class PageManager {
         PageModel pageModel = new PageModel();
         pageModel.setPath(path);
         pageModel.setSite(siteModel);
-        pageModel.setCode(code);
-        pageModel.setContent(content);
+        fillPageModel(pageModel, page);
         pageRepository.save(pageModel);
-        log.info("Страница сохранена: {}", pageModel.getPath());
+        saveContent(pageModel.getId(), page.content());
+        pageCounter.pageAdded(siteModel.getId());
+        sample.stop(meterRegistry.timer("indexing.page.save", "operation", "create"));
+        log.debug("Страница сохранена: {}", pageModel.getPath());
         return pageModel;
     }
+
+    @Transactional
+    public PageModel updatePageModel(CrawledPage page) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        PageModel pageModel = pageRepository.findById(page.pageId())
+                .orElseThrow(() -> new IllegalStateException("Страница не найдена: " + page.url()));
+        fillPageModel(pageModel, page);
+        pageRepository.save(pageModel);
+        saveContent(pageModel.getId(), page.content());
+        sample.stop(meterRegistry.timer("indexing.page.save", "operation", "update"));
+        log.debug("Страница обновлена: {}", pageModel.getPath());
+        return pageModel;
+    }
+
+    @Transactional
+    public void updateValidators(int pageId, String etag, String lastModified) {
+        pageRepository.updateValidators(pageId, etag, lastModified);
+    }
+
+    @Transactional(readOnly = true)
+    public String loadContent(int pageId) {
+        return pageContentRepository.findContentByPageId(pageId);
+    }
+
+    public static String extractTitle(Document document) {
+        return StringUtils.left(document.title().trim(), TITLE_MAX_LENGTH);
+    }
+
+    public static String extractPlainText(Document document) {
+        Element body = document.body();
+        String text = body != null ? body.text() : document.text();
+        text = NON_WORD_CHARS.matcher(text).replaceAll(" ");
+        return SPACES.matcher(text).replaceAll(" ").trim();
+    }
+
+    private static void fillPageModel(PageModel pageModel, CrawledPage page) {
+        pageModel.setCode(page.code());
+        pageModel.setTitle(page.title());
+        pageModel.setText(page.text());
+        pageModel.setEtag(page.etag());
+        pageModel.setLastModified(page.lastModified());
+        pageModel.setContentHash(page.contentHash());
+    }
+
+    private void saveContent(int pageId, String content) {
+        pageContentRepository.upsert(pageId, ContentCodec.compress(StringUtils.defaultString(content)));
+    }
 }
 
 
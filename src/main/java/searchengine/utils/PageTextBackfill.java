@@ -0,0 +1,57 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Заполняет заголовок и текст страниц, проиндексированных до появления колонок page.title и page.text.
+ * Выполняется один раз при создании контекста, после переноса HTML в page_content,
+ * поэтому поиск только читает готовые колонки и ничего не пишет.
+ */
+@Slf4j
+@Service
+@DependsOn("pageContentMigration")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class PageTextBackfill {
+    private static final int CHUNK_ROWS = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void backfill() {
+        long filled = 0;
+        int lastId = 0;
+        while (true) {
+            List<Object[]> rows = new ArrayList<>(CHUNK_ROWS);
+            jdbcTemplate.query("SELECT p.id, c.content FROM page p LEFT JOIN page_content c ON c.page_id = p.id" +
+                            " WHERE p.id > ? AND (p.title IS NULL OR p.text IS NULL) ORDER BY p.id LIMIT ?",
+                    rs -> {
+                        // Страница без сохранённого HTML получает пустые колонки и больше не выбирается
+                        byte[] content = rs.getBytes(2);
+                        Document document = Jsoup.parse(content == null ? "" : ContentCodec.decompress(content));
+                        rows.add(new Object[]{PageManager.extractTitle(document),
+                                PageManager.extractPlainText(document), rs.getInt(1)});
+                    }, lastId, CHUNK_ROWS);
+            if (rows.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("UPDATE page SET title = ?, text = ? WHERE id = ?", rows);
+            lastId = (int) rows.get(rows.size() - 1)[2];
+            filled += rows.size();
+            log.info("Заполнение заголовков и текста страниц: {} (до id {})", filled, lastId);
+        }
+        if (filled > 0) {
+            log.info("Заголовки и текст заполнены для страниц: {}", filled);
+        }
+    }
+}
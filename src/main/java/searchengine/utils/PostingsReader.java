@@ -0,0 +1,102 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * Чтение постингов для поиска: из сегмента сайта, если он актуален, иначе из таблицы index.
+ * Результаты отдаются примитивными массивами и {@link IntFloatMap}, списки IN режутся на порции.
+ */
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class PostingsReader {
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SegmentIndexStore segmentIndexStore;
+
+    /**
+     * Страницы сайта, содержащие лемму, по возрастанию id вместе с рангом леммы на каждой из них.
+     */
+    public SegmentIndexReader.Postings postings(int siteId, String lemma, int lemmaId) {
+        Optional<SegmentIndexReader> segment = segmentIndexStore.reader(siteId);
+        if (segment.isPresent()) {
+            return segment.get().postings(lemma);
+        }
+        IntBuffer pageIds = new IntBuffer();
+        FloatBuffer ranks = new FloatBuffer();
+        jdbcTemplate.query("SELECT page_id, `rank` FROM `index` WHERE lemma_id = ? ORDER BY page_id",
+                rs -> {
+                    pageIds.add(rs.getInt(1));
+                    ranks.add(rs.getFloat(2));
+                }, lemmaId);
+        return new SegmentIndexReader.Postings(pageIds.toArray(), ranks.toArray());
+    }
+
+    /**
+     * Сумма рангов всех лемм каждой из страниц; страницы без записей в индексе пропускаются.
+     */
+    public IntFloatMap rankSums(int siteId, int[] pageIds) {
+        IntFloatMap rankSums = new IntFloatMap(pageIds.length);
+        Optional<SegmentIndexReader> segment = segmentIndexStore.reader(siteId);
+        if (segment.isPresent()) {
+            for (int pageId : pageIds) {
+                float rankSum = segment.get().rankSum(pageId);
+                if (!Float.isNaN(rankSum)) {
+                    rankSums.put(pageId, rankSum);
+                }
+            }
+            return rankSums;
+        }
+        for (int from = 0; from < pageIds.length; from += IN_CHUNK_SIZE) {
+            int to = Math.min(pageIds.length, from + IN_CHUNK_SIZE);
+            Object[] args = new Object[to - from];
+            for (int i = from; i < to; i++) {
+                args[i - from] = pageIds[i];
+            }
+            jdbcTemplate.query("SELECT page_id, SUM(`rank`) FROM `index` WHERE page_id IN (" +
+                    String.join(", ", Collections.nCopies(args.length, "?")) + ") GROUP BY page_id", rs -> {
+                rankSums.put(rs.getInt(1), rs.getFloat(2));
+            }, args);
+        }
+        return rankSums;
+    }
+
+    private static final class IntBuffer {
+        private int[] values = new int[64];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class FloatBuffer {
+        private float[] values = new float[64];
+        private int size;
+
+        private void add(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private float[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package searchengine.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.SearchSettings;
+import searchengine.model.SiteModel;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш ранжированных результатов поиска по сайту. Ключ — отсортированный набор лемм запроса,
+ * сайт, его поколение и счётчик изменений сайта, который увеличивается при каждой инвалидации.
+ */
+@Slf4j
+@Service
+public class SearchResultCache {
+    private final Cache<Key, Ranking> rankings;
+    private final Map<Integer, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SearchResultCache(SearchSettings searchSettings) {
+        this.rankings = Caffeine.newBuilder()
+                .maximumSize(searchSettings.getCacheSize())
+                .expireAfterWrite(Duration.ofSeconds(searchSettings.getCacheTtlSeconds()))
+                .recordStats()
+                .build();
+    }
+
+    public Key key(Collection<String> sortedLemmas, SiteModel siteModel) {
+        return new Key(List.copyOf(sortedLemmas), siteModel.getId(), siteModel.getGeneration(),
+                version(siteModel.getId()).get());
+    }
+
+    /**
+     * Ранжирование из кэша, если в нём есть хотя бы {@code depth} страниц или все найденные страницы.
+     */
+    public Optional<Ranking> get(Key key, int depth) {
+        Ranking ranking = rankings.getIfPresent(key);
+        if (ranking != null && !ranking.covers(depth)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(ranking);
+    }
+
+    public void put(Key key, Ranking ranking) {
+        rankings.put(key, ranking);
+    }
+
+    /**
+     * Сбрасывает результаты сайта. Внутри транзакции сброс повторяется после фиксации,
+     * чтобы результат, посчитанный по ещё не зафиксированным данным, не остался в кэше.
+     */
+    public void invalidate(int siteId) {
+        evict(siteId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(siteId);
+                }
+            });
+        }
+    }
+
+    public CacheStats getStats() {
+        return rankings.stats();
+    }
+
+    public long getSize() {
+        return rankings.estimatedSize();
+    }
+
+    private void evict(int siteId) {
+        version(siteId).incrementAndGet();
+        rankings.asMap().keySet().removeIf(key -> key.siteId() == siteId);
+        log.debug("Кэш результатов поиска сброшен для сайта: {}", siteId);
+    }
+
+    private AtomicLong version(int siteId) {
+        return versions.computeIfAbsent(siteId, id -> new AtomicLong());
+    }
+
+    public record Key(List<String> lemmas, int siteId, int generation, long version) {
+    }
+
+    /**
+     * Первые страницы ранжирования сайта по убыванию релевантности и общее число найденных страниц.
+     */
+    public record Ranking(int[] pageIds, float[] relevance, int total) {
+        public boolean covers(int depth) {
+            return pageIds.length >= depth || pageIds.length == total;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package searchengine.utils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Чтение сегмента, записанного {@link SegmentIndexWriter}. Файл отображается в память целиком,
+ * словарь и таблица страниц читаются при открытии, постинги декодируются по запросу.
+ * Чтение идёт только абсолютными операциями над буфером, поэтому экземпляр потокобезопасен.
+ */
+public final class SegmentIndexReader {
+    private final MappedByteBuffer buffer;
+    private final Map<String, DictionaryEntry> dictionary;
+    private final int[] pageIds;
+    private final float[] rankSums;
+
+    private SegmentIndexReader(MappedByteBuffer buffer, Map<String, DictionaryEntry> dictionary,
+                               int[] pageIds, float[] rankSums) {
+        this.buffer = buffer;
+        this.dictionary = dictionary;
+        this.pageIds = pageIds;
+        this.rankSums = rankSums;
+    }
+
+    public static SegmentIndexReader open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Сегмент превышает 2 ГБ: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < SegmentIndexWriter.HEADER_SIZE || buffer.getInt(0) != SegmentIndexWriter.MAGIC
+                || buffer.getInt(4) != SegmentIndexWriter.VERSION) {
+            throw new IOException("Неизвестный формат сегмента: " + path);
+        }
+        int lemmaCount = buffer.getInt(8);
+        int pageCount = buffer.getInt(12);
+        int position = (int) buffer.getLong(16);
+        int pagesOffset = (int) buffer.getLong(24);
+
+        Map<String, DictionaryEntry> dictionary = new HashMap<>(lemmaCount * 2);
+        int[] cursor = {position};
+        for (int i = 0; i < lemmaCount; i++) {
+            int length = readVarint(buffer, cursor);
+            byte[] bytes = new byte[length];
+            buffer.get(cursor[0], bytes);
+            cursor[0] += length;
+            long offset = buffer.getLong(cursor[0]);
+            int documentFrequency = buffer.getInt(cursor[0] + 8);
+            cursor[0] += 12;
+            dictionary.put(new String(bytes, StandardCharsets.UTF_8), new DictionaryEntry((int) offset, documentFrequency));
+        }
+
+        int[] pageIds = new int[pageCount];
+        float[] rankSums = new float[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            pageIds[i] = buffer.getInt(pagesOffset + i * 8);
+            rankSums[i] = buffer.getFloat(pagesOffset + i * 8 + 4);
+        }
+        return new SegmentIndexReader(buffer, dictionary, pageIds, rankSums);
+    }
+
+    public int documentFrequency(String lemma) {
+        DictionaryEntry entry = dictionary.get(lemma);
+        return entry == null ? 0 : entry.documentFrequency();
+    }
+
+    /**
+     * Постинги леммы: id страниц по возрастанию и их ранги; пустые, если леммы нет в сегменте.
+     */
+    public Postings postings(String lemma) {
+        DictionaryEntry entry = dictionary.get(lemma);
+        if (entry == null) {
+            return new Postings(new int[0], new float[0]);
+        }
+        int[] cursor = {entry.offset()};
+        int size = readVarint(buffer, cursor);
+        int[] ids = new int[size];
+        int pageId = 0;
+        for (int i = 0; i < size; i++) {
+            pageId += readVarint(buffer, cursor);
+            ids[i] = pageId;
+        }
+        float[] ranks = new float[size];
+        for (int i = 0; i < size; i++) {
+            ranks[i] = SegmentIndexWriter.dequantize(Byte.toUnsignedInt(buffer.get(cursor[0] + i)));
+        }
+        return new Postings(ids, ranks);
+    }
+
+    /**
+     * Сумма рангов всех лемм страницы или {@code NaN}, если страницы нет в сегменте.
+     */
+    public float rankSum(int pageId) {
+        int index = Arrays.binarySearch(pageIds, pageId);
+        return index >= 0 ? rankSums[index] : Float.NaN;
+    }
+
+    public int getLemmaCount() {
+        return dictionary.size();
+    }
+
+    public int getPageCount() {
+        return pageIds.length;
+    }
+
+    private static int readVarint(MappedByteBuffer buffer, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer.get(cursor[0]++);
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    public record Postings(int[] pageIds, float[] ranks) {
+    }
+
+    private record DictionaryEntry(int offset, int documentFrequency) {
+    }
+}
@@ -0,0 +1,180 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import searchengine.config.SegmentSettings;
+import searchengine.model.SiteModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Файлы сегментов по одному на сайт. MySQL остаётся основным хранилищем: сегмент строится из таблиц
+ * после обхода сайта и удаляется, как только данные сайта меняются в обход него.
+ * Сайты без актуального сегмента ищутся по MySQL. Открытие, снятие и замена сегмента сайта идут
+ * под замком сайта, чтобы поиск не закэшировал файл, который как раз удаляется.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SegmentIndexStore {
+    private final JdbcTemplate jdbcTemplate;
+    private final SegmentSettings segmentSettings;
+    private final Map<Integer, Optional<SegmentIndexReader>> readers = new ConcurrentHashMap<>();
+    private final Map<Integer, Object> siteLocks = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return segmentSettings.isEnabled();
+    }
+
+    public Optional<SegmentIndexReader> reader(int siteId) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        Optional<SegmentIndexReader> reader = readers.get(siteId);
+        if (reader != null) {
+            return reader;
+        }
+        synchronized (siteLock(siteId)) {
+            return readers.computeIfAbsent(siteId, this::open);
+        }
+    }
+
+    public void build(SiteModel siteModel) throws IOException {
+        if (!isEnabled()) {
+            // Сегмент от прошлой сборки устарел, даже если сейчас сегменты не используются
+            invalidate(siteModel.getId());
+            return;
+        }
+        long start = System.nanoTime();
+        int siteId = siteModel.getId();
+        Path target = segmentPath(siteId);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        Map<Integer, String> lemmasById = new HashMap<>();
+        List<int[]> chunks = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, lemma, frequency FROM lemma WHERE site_id = ? ORDER BY id", rs -> {
+            lemmasById.put(rs.getInt("id"), rs.getString("lemma"));
+            int[] chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (chunk == null || chunk[2] + rs.getInt("frequency") > segmentSettings.getBuildChunkRows()) {
+                chunks.add(new int[]{rs.getInt("id"), rs.getInt("id"), rs.getInt("frequency")});
+            } else {
+                chunk[1] = rs.getInt("id");
+                chunk[2] += rs.getInt("frequency");
+            }
+        }, siteId);
+
+        try (SegmentIndexWriter writer = new SegmentIndexWriter(temp)) {
+            PostingsBuffer postings = new PostingsBuffer();
+            for (int[] chunk : chunks) {
+                jdbcTemplate.query("SELECT i.lemma_id, i.page_id, i.`rank` FROM `index` i JOIN lemma l ON l.id = i.lemma_id " +
+                        "WHERE l.site_id = ? AND i.lemma_id BETWEEN ? AND ? ORDER BY i.lemma_id, i.page_id", rs -> {
+                    int lemmaId = rs.getInt("lemma_id");
+                    if (lemmaId != postings.key) {
+                        postings.flushTo(writer, lemmasById);
+                        postings.key = lemmaId;
+                    }
+                    postings.add(rs.getInt("page_id"), rs.getFloat("rank"));
+                }, siteId, chunk[0], chunk[1]);
+                postings.flushTo(writer, lemmasById);
+            }
+
+            PostingsBuffer pages = new PostingsBuffer();
+            jdbcTemplate.query("SELECT i.page_id, SUM(i.`rank`) AS rank_sum FROM `index` i " +
+                    "JOIN page p ON p.id = i.page_id WHERE p.site_id = ? GROUP BY i.page_id ORDER BY i.page_id", rs -> {
+                pages.add(rs.getInt("page_id"), rs.getFloat("rank_sum"));
+            }, siteId);
+            writer.writePages(pages.pageIds, pages.ranks, pages.size);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        synchronized (siteLock(siteId)) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            readers.remove(siteId);
+        }
+        log.info("Сегмент сайта {} записан: лемм {}, {} байт за {} мс", siteModel.getUrl(), lemmasById.size(),
+                Files.size(target), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Снимает сегмент сайта после изменения его страниц в MySQL; до следующей сборки поиск идёт по MySQL.
+     */
+    public void invalidate(int siteId) {
+        synchronized (siteLock(siteId)) {
+            try {
+                if (Files.deleteIfExists(segmentPath(siteId))) {
+                    log.info("Сегмент сайта {} удалён", siteId);
+                }
+            } catch (IOException e) {
+                log.warn("Не удалось удалить сегмент сайта {}: {}", siteId, e.getMessage());
+            }
+            // До следующей сборки сайт ищется по MySQL, даже если файл удалить не удалось
+            readers.put(siteId, Optional.empty());
+        }
+    }
+
+    private Object siteLock(int siteId) {
+        return siteLocks.computeIfAbsent(siteId, id -> new Object());
+    }
+
+    private Optional<SegmentIndexReader> open(int siteId) {
+        Path path = segmentPath(siteId);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            SegmentIndexReader reader = SegmentIndexReader.open(path);
+            log.info("Открыт сегмент сайта {}: лемм {}, страниц {}", siteId, reader.getLemmaCount(),
+                    reader.getPageCount());
+            return Optional.of(reader);
+        } catch (IOException e) {
+            log.warn("Сегмент сайта {} не открыт, поиск по MySQL: {}", siteId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Path segmentPath(int siteId) {
+        return Path.of(segmentSettings.getDirectory(), "site-" + siteId + ".seg");
+    }
+
+    private static final class PostingsBuffer {
+        private int key = -1;
+        private int size;
+        private int[] pageIds = new int[256];
+        private float[] ranks = new float[256];
+
+        private void add(int pageId, float rank) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pageIds[size] = pageId;
+            ranks[size++] = rank;
+        }
+
+        private void flushTo(SegmentIndexWriter writer, Map<Integer, String> lemmasById) {
+            if (size > 0) {
+                try {
+                    writer.addPostings(lemmasById.get(key), pageIds, ranks, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package searchengine.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Последовательная запись сегмента инвертированного индекса сайта.
+ * <pre>
+ * заголовок: magic, version, число лемм, число страниц, смещение словаря, смещение таблицы страниц
+ * постинги:  varint число страниц, id страниц дельтами в varint, ранги по байту (логарифмическая шкала)
+ * словарь:   леммы по алфавиту — varint длина, UTF-8, смещение постингов, число страниц
+ * страницы:  id страницы и сумма рангов всех её лемм, по возрастанию id
+ * </pre>
+ * Леммы добавляются по одной, id страниц в постингах должны возрастать.
+ */
+public final class SegmentIndexWriter implements Closeable {
+    static final int MAGIC = 0x53454731;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final double RANK_SCALE = Math.log1p(65_535) / 255;
+
+    private final Path path;
+    private final DataOutputStream output;
+    private final List<DictionaryEntry> dictionary = new ArrayList<>();
+    private int pageCount;
+    private boolean pagesWritten;
+
+    public SegmentIndexWriter(Path path) throws IOException {
+        this.path = path;
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        output.write(new byte[HEADER_SIZE]);
+    }
+
+    public void addPostings(String lemma, int[] pageIds, float[] ranks, int size) throws IOException {
+        if (pagesWritten) {
+            throw new IllegalStateException("Постинги добавляются до таблицы страниц");
+        }
+        dictionary.add(new DictionaryEntry(lemma, position(), size));
+        writeVarint(size);
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarint(pageIds[i] - previous);
+            previous = pageIds[i];
+        }
+        for (int i = 0; i < size; i++) {
+            output.writeByte(quantize(ranks[i]));
+        }
+    }
+
+    public void writePages(int[] pageIds, float[] rankSums, int size) throws IOException {
+        long dictionaryOffset = position();
+        dictionary.sort(Comparator.comparing(DictionaryEntry::lemma));
+        for (DictionaryEntry entry : dictionary) {
+            byte[] bytes = entry.lemma().getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            output.write(bytes);
+            output.writeLong(entry.offset());
+            output.writeInt(entry.documentFrequency());
+        }
+        long pagesOffset = position();
+        for (int i = 0; i < size; i++) {
+            output.writeInt(pageIds[i]);
+            output.writeFloat(rankSums[i]);
+        }
+        pageCount = size;
+        pagesWritten = true;
+        output.flush();
+        if (position() >= Integer.MAX_VALUE) {
+            throw new IOException("Сегмент превышает 2 ГБ: " + path);
+        }
+        writeHeader(dictionaryOffset, pagesOffset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    static int quantize(float rank) {
+        return (int) Math.min(255, Math.round(Math.log1p(Math.max(0, rank)) / RANK_SCALE));
+    }
+
+    static float dequantize(int quantized) {
+        return (float) Math.expm1(quantized * RANK_SCALE);
+    }
+
+    private void writeHeader(long dictionaryOffset, long pagesOffset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(dictionary.size());
+            file.writeInt(pageCount);
+            file.writeLong(dictionaryOffset);
+            file.writeLong(pagesOffset);
+        }
+    }
+
+    private long position() {
+        return Integer.toUnsignedLong(output.size());
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private record DictionaryEntry(String lemma, long offset, int documentFrequency) {
+    }
+}
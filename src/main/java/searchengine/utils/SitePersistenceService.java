@@ -6,14 +6,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.BatchSettings;
 import searchengine.config.Site;
 import searchengine.model.*;
 import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageContentRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 @Service
 @Slf4j
@@ -23,6 +25,13 @@ public class SitePersistenceService {
     private final SiteRepository siteRepository;
     private final IndexRepository indexRepository;
     private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
+    private final LemmaCache lemmaCache;
+    private final LemmaBatchWriter lemmaBatchWriter;
+    private final BatchSettings batchSettings;
+    private final SegmentIndexStore segmentIndexStore;
+    private final CorpusStatistics corpusStatistics;
+    private final PageCounter pageCounter;
 
     @Transactional
     public void saveSiteModel(Site site, SiteModel siteModel) {
@@ -31,44 +40,80 @@ public class SitePersistenceService {
         siteModel.setName(site.getName());
         siteModel.setStatus(Status.INDEXING);
         siteRepository.save(siteModel);
+        pageCounter.register(siteModel.getId());
         log.info("Создан новый SiteModel: {}", siteModel);
     }
 
+    /**
+     * Делает построенное поколение сайта видимым для поиска, а прежнее — скрывает.
+     * Оба изменения фиксируются одной транзакцией.
+     */
+    @Transactional
+    public void promoteGeneration(SiteModel generation, SiteModel previous) {
+        previous.setActive(false);
+        siteRepository.save(previous);
+        generation.setActive(true);
+        generation.setStatus(Status.INDEXED);
+        generation.setStatusTime(LocalDateTime.now());
+        generation.setLastError(null);
+        siteRepository.save(generation);
+        log.info("Сайт {}: поколение {} заменило поколение {}", generation.getUrl(), generation.getGeneration(),
+                previous.getGeneration());
+    }
+
     @Transactional
     public void deletePage(PageModel pageModel) {
         if (pageModel != null) {
             log.info("Удаляем страницу для повторной индексации: {}", pageModel.getPath());
             logIfTransactionInactive(pageModel.getSite());
-
-            List<IndexModel> indexes = indexRepository.findByPage(pageModel);
-            indexes.forEach(index -> {
-                LemmaModel lemma = index.getLemma();
-                indexRepository.delete(index);
-
-                if (indexRepository.countByLemma(lemma) == 0) {
-                    lemmaRepository.delete(lemma);
-                }
-            });
-
+            lemmaBatchWriter.release(pageModel);
+            pageContentRepository.deleteByPageId(pageModel.getId());
             pageRepository.delete(pageModel);
             pageRepository.flush();
+            pageCounter.pageRemoved(pageModel.getSite().getId());
             log.info("Страница успешно удалена: {}", pageModel.getPath());
         } else {
             log.warn("Страница не найдена для удаления");
         }
     }
 
-    @Transactional
+    /**
+     * Удаляет сайт порциями по диапазонам id страниц, каждая порция — отдельная транзакция,
+     * поэтому ни страницы, ни строки индекса не загружаются в память.
+     */
     public void deleteData(SiteModel siteModel) {
         try {
-            List<PageModel> pages = pageRepository.findBySite(siteModel);
-            for (PageModel page : pages) {
-                indexRepository.deleteByPage(page);
+            int siteId = siteModel.getId();
+            int chunkSize = Math.max(1, batchSettings.getDeleteChunkSize());
+            Integer minId = pageRepository.findMinIdBySiteId(siteId);
+            Integer maxId = pageRepository.findMaxIdBySiteId(siteId);
+            long deletedPages = 0;
+            long deletedIndexes = 0;
+            if (minId != null && maxId != null) {
+                for (long fromId = minId; fromId <= maxId; fromId += chunkSize) {
+                    int toId = (int) Math.min(maxId, fromId + chunkSize - 1);
+                    deletedIndexes += indexRepository.deleteBySiteIdAndPageIdRange(siteId, (int) fromId, toId);
+                    pageContentRepository.deleteBySiteIdAndPageIdRange(siteId, (int) fromId, toId);
+                    deletedPages += pageRepository.deleteBySiteIdAndIdRange(siteId, (int) fromId, toId);
+                    log.info("Удаление сайта {}: страниц {}, записей индекса {} (до id {} из {})",
+                            siteModel.getUrl(), deletedPages, deletedIndexes, toId, maxId);
+                }
             }
-            pageRepository.deleteBySite(siteModel);
-            lemmaRepository.deleteBySite(siteModel);
+
+            long deletedLemmas = 0;
+            int deleted;
+            do {
+                deleted = lemmaRepository.deleteChunkBySiteId(siteId, chunkSize);
+                deletedLemmas += deleted;
+            } while (deleted > 0);
+
             siteRepository.delete(siteModel);
-            log.info("Сайты удалены для повторной индексации: {}", siteModel);
+            lemmaCache.evictSite(siteId);
+            corpusStatistics.evictSite(siteId);
+            pageCounter.evictSite(siteId);
+            segmentIndexStore.invalidate(siteId);
+            log.info("Сайт {} удалён: страниц {}, записей индекса {}, лемм {}", siteModel.getUrl(),
+                    deletedPages, deletedIndexes, deletedLemmas);
         } catch (Exception e) {
             log.error("Ошибка при удалении данных для сайта {}", siteModel);
             throw e;
@@ -0,0 +1,121 @@
+package searchengine.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.tartarus.snowball.SnowballProgram;
+import org.tartarus.snowball.ext.EnglishStemmer;
+import org.tartarus.snowball.ext.RussianStemmer;
+import searchengine.config.AnalyzerSettings;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Единая точка лемматизации для индексации и поиска.
+ * Морфология используется только на чтение и общая для всех потоков,
+ * а стеммеры Snowball хранят состояние, поэтому у каждого потока свой экземпляр.
+ * Результат лемматизации словоформы запоминается в ограниченном кэше.
+ */
+@Slf4j
+@Component
+public class TextAnalyzer {
+    private final LuceneMorphology luceneMorphologyRu;
+    private final LuceneMorphology luceneMorphologyEng;
+    private final ThreadLocal<SnowballProgram> russianStemmer = ThreadLocal.withInitial(RussianStemmer::new);
+    private final ThreadLocal<SnowballProgram> englishStemmer = ThreadLocal.withInitial(EnglishStemmer::new);
+    private final Cache<String, List<String>> wordCache;
+    public static final String[] PARTICLES_NAMES = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ", "МС",
+            "ARTICLE", "CONJ", "PREP"};
+
+    @Autowired
+    public TextAnalyzer(LuceneMorphology luceneMorphologyRu, LuceneMorphology luceneMorphologyEng,
+                        AnalyzerSettings analyzerSettings) {
+        this.luceneMorphologyRu = luceneMorphologyRu;
+        this.luceneMorphologyEng = luceneMorphologyEng;
+        this.wordCache = Caffeine.newBuilder()
+                .maximumSize(analyzerSettings.getWordCacheSize())
+                .recordStats()
+                .build();
+    }
+
+    public Map<String, Integer> analyze(String text) {
+        Map<String, Integer> lemmaCountMap = new HashMap<>();
+        WordTokenizer.tokenize(text, (word, script) -> lemmatize(word, script)
+                .forEach(lemma -> lemmaCountMap.merge(lemma, 1, Integer::sum)));
+        return lemmaCountMap;
+    }
+
+    public Set<String> lemmas(String text) {
+        return new TreeSet<>(analyze(text).keySet());
+    }
+
+    public List<String> lemmatize(String word, WordTokenizer.Script script) {
+        return wordCache.get(word, wordForm -> script == WordTokenizer.Script.CYRILLIC
+                ? lemmatize(wordForm, luceneMorphologyRu, russianStemmer)
+                : lemmatize(wordForm, luceneMorphologyEng, englishStemmer));
+    }
+
+    public CacheStats getWordCacheStats() {
+        return wordCache.stats();
+    }
+
+    public long getWordCacheSize() {
+        return wordCache.estimatedSize();
+    }
+
+    private List<String> lemmatize(String word, LuceneMorphology luceneMorphology, ThreadLocal<SnowballProgram> stemmer) {
+        return safeGetMorphInfo(luceneMorphology, word)
+                .filter(morphInfo -> Arrays.stream(PARTICLES_NAMES).noneMatch(morphInfo::contains))
+                .map(morphInfo -> morphInfo.split("\\|")[0])
+                .filter(particle -> !particle.isBlank())
+                .filter(normalForm -> safeCheckString(luceneMorphology, normalForm))
+                .flatMap(normalForm -> safeGetNormalForms(luceneMorphology, normalForm, stemmer))
+                .peek(lemma -> log.debug("Изъяты леммы: {}", lemma))
+                .toList();
+    }
+
+    private Stream<String> safeGetMorphInfo(LuceneMorphology morphology, String word) {
+        try {
+            return morphology.getMorphInfo(word).stream();
+        } catch (Exception e) {
+            log.warn("Слово '{}' не может быть обработано морфологией: {}", word, e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    private boolean safeCheckString(LuceneMorphology morphology, String word) {
+        try {
+            return morphology.checkString(word);
+        } catch (Exception e) {
+            log.warn("Слово '{}' не прошло проверку checkString: {}", word, e.getMessage());
+            return false;
+        }
+    }
+
+    private Stream<String> safeGetNormalForms(LuceneMorphology morphology, String word, ThreadLocal<SnowballProgram> stemmer) {
+        try {
+            return morphology.getNormalForms(word).stream()
+                    .map(lemma -> safeStem(lemma, stemmer));
+        } catch (Exception e) {
+            log.warn("Ошибка нормализации лемм '{}': {}", word, e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    private String safeStem(String lemma, ThreadLocal<SnowballProgram> stemmer) {
+        try {
+            SnowballProgram stem = stemmer.get();
+            stem.setCurrent(lemma);
+            stem.stem();
+            return stem.getCurrent();
+        } catch (Exception e) {
+            log.warn("Ошибка стемминга слова '{}': {}", lemma, e.getMessage());
+            return lemma;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package searchengine.utils;
+
+import java.util.Locale;
+import java.util.function.BiConsumer;
+
+/**
+ * Однопроходный токенизатор: выделяет непрерывные последовательности русских или латинских букв,
+ * определяя алфавит по ходу чтения, и передаёт каждое слово в нижнем регистре потребителю.
+ */
+public final class WordTokenizer {
+
+    public enum Script {
+        CYRILLIC, LATIN
+    }
+
+    private WordTokenizer() {
+    }
+
+    public static void tokenize(CharSequence text, BiConsumer<String, Script> consumer) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int position = 0;
+        while (position < length) {
+            Script script = scriptOf(text.charAt(position));
+            if (script == null) {
+                position++;
+                continue;
+            }
+            int start = position;
+            while (position < length && scriptOf(text.charAt(position)) == script) {
+                position++;
+            }
+            consumer.accept(text.subSequence(start, position).toString().toLowerCase(Locale.ROOT), script);
+        }
+    }
+
+    public static Script scriptOf(char c) {
+        if ((c >= 'а' && c <= 'я') || (c >= 'А' && c <= 'Я') || c == 'ё' || c == 'Ё') {
+            return Script.CYRILLIC;
+        }
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+            return Script.LATIN;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.utils.FetchExecutorFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Загрузка страниц на виртуальных потоках (профиль сборки jdk21).
+ * Число одновременных запросов ограничивает не пул, а {@link searchengine.utils.PageFetcher}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "indexing-settings.crawler", name = "fetch-mode", havingValue = "virtual")
+public class VirtualFetchExecutorFactory implements FetchExecutorFactory {
+
+    @Override
+    public ExecutorService create(String siteUrl, int fetchers) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("crawl-fetch-", 0).factory());
+    }
+}
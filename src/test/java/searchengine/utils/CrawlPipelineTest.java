@@ -0,0 +1,159 @@
+package searchengine.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.indexing.CrawledPage;
+import searchengine.dto.indexing.PageFingerprint;
+import searchengine.model.SiteModel;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Конвейер обходит синтетический сайт; запись в БД и лемматизация заменены заглушками,
+ * а сохранённые страницы собираются в памяти.
+ */
+class CrawlPipelineTest {
+    private final Set<String> savedPaths = ConcurrentHashMap.newKeySet();
+    private final CrawlerSettings settings = new CrawlerSettings();
+    private SyntheticSite site;
+    private PageManager pageManager;
+    private FinderLemma finderLemma;
+    private TextAnalyzer textAnalyzer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        site = new SyntheticSite()
+                .page("/", "Главная", "/a", "/b")
+                .page("/a", "Страница A", "/c")
+                .page("/b", "Страница B", "/")
+                .page("/c", "Страница C");
+        settings.setPolitenessDelayMs(0);
+        settings.setProgressIntervalMs(50);
+        settings.setFetchers(4);
+        settings.setParsers(2);
+        settings.setLemmatizers(2);
+
+        pageManager = mock(PageManager.class);
+        finderLemma = mock(FinderLemma.class);
+        textAnalyzer = mock(TextAnalyzer.class);
+        when(textAnalyzer.analyze(anyString())).thenReturn(Map.of("страница", 1));
+        doAnswer(invocation -> {
+            List<CrawledPage> pages = invocation.getArgument(1);
+            pages.forEach(page -> savedPaths.add(page.url().substring(site.url().length())));
+            return null;
+        }).when(finderLemma).savePages(any(), anyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        site.close();
+    }
+
+    @Test
+    void crawlsEveryReachablePageOnce() throws Exception {
+        CrawlPipeline pipeline = pipeline(Map.of());
+        pipeline.crawl(site.url("/"));
+
+        assertThat(savedPaths).containsExactlyInAnyOrder("/", "/a", "/b", "/c");
+        assertThat(site.requests("/")).isEqualTo(1);
+        assertThat(pipeline.getCrawlFrontier().getProcessedPages()).isEqualTo(4);
+        assertThat(pipeline.getUnvisitedPageIds()).isEmpty();
+    }
+
+    @Test
+    void finishesSlowWritesBeforeReturning() throws Exception {
+        settings.setWriteBatchSize(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Thread.sleep(100);
+            interrupted.compareAndSet(false, Thread.currentThread().isInterrupted());
+            List<CrawledPage> pages = invocation.getArgument(1);
+            pages.forEach(page -> savedPaths.add(page.url().substring(site.url().length())));
+            return null;
+        }).when(finderLemma).savePages(any(), anyList());
+
+        pipeline(Map.of()).crawl(site.url("/"));
+
+        assertThat(savedPaths).containsExactlyInAnyOrder("/", "/a", "/b", "/c");
+        assertThat(interrupted).isFalse();
+    }
+
+    @Test
+    void followsStoredLinksOfNotModifiedPages() throws Exception {
+        Map<String, PageFingerprint> knownPages = Map.of(
+                "/", fingerprint(1, "/"),
+                "/a", fingerprint(2, "/a"));
+        when(pageManager.loadContent(1)).thenReturn(site.html("/"));
+        when(pageManager.loadContent(2)).thenReturn(site.html("/a"));
+
+        CrawlPipeline pipeline = pipeline(knownPages);
+        pipeline.crawl(site.url("/"));
+
+        // Главная и A ответили 304, но их ссылки из сохранённой копии довели обход до B и C
+        assertThat(savedPaths).containsExactlyInAnyOrder("/b", "/c");
+        assertThat(pipeline.getUnchangedPages()).isEqualTo(2);
+        assertThat(pipeline.getUnvisitedPageIds()).isEmpty();
+    }
+
+    @Test
+    void reportsKnownPagesThatAreNoLongerLinked() throws Exception {
+        Map<String, PageFingerprint> knownPages = Map.of(
+                "/", fingerprint(1, "/"),
+                "/old", new PageFingerprint(9, "/old", null, null, "hash"));
+        when(pageManager.loadContent(1)).thenReturn(site.html("/"));
+
+        CrawlPipeline pipeline = pipeline(knownPages);
+        pipeline.crawl(site.url("/"));
+
+        assertThat(pipeline.getUnvisitedPageIds()).containsExactly(9);
+    }
+
+    @Test
+    void keepsKnownPagesOnTransientErrorsAndDropsGoneOnes() throws Exception {
+        site.fail("/a", 503).fail("/b", 404).fail("/c", 410);
+        Map<String, PageFingerprint> knownPages = Map.of(
+                "/", fingerprint(1, "/"),
+                "/a", new PageFingerprint(2, "/a", null, null, "hash"),
+                "/b", new PageFingerprint(3, "/b", null, null, "hash"),
+                "/c", new PageFingerprint(4, "/c", null, null, "hash"));
+        when(pageManager.loadContent(1)).thenReturn(site.page("/", "Главная", "/a", "/b", "/c").html("/"));
+
+        CrawlPipeline pipeline = pipeline(knownPages);
+        pipeline.crawl(site.url("/"));
+
+        assertThat(pipeline.getUnvisitedPageIds()).containsExactlyInAnyOrder(3, 4);
+        verify(pageManager, never()).updateSiteStatus(any(), any(), any());
+    }
+
+    private PageFingerprint fingerprint(int id, String path) {
+        return new PageFingerprint(id, path, SyntheticSite.etag(site.html(path)), null, "hash");
+    }
+
+    private CrawlPipeline pipeline(Map<String, PageFingerprint> knownPages) {
+        SiteModel siteModel = new SiteModel();
+        siteModel.setUrl(site.url());
+        FetchExecutorFactory fetchExecutorFactory = (siteUrl, fetchers) ->
+                Executors.newFixedThreadPool(fetchers, new CustomizableThreadFactory("test-fetch-"));
+        return new CrawlPipeline(siteModel, new AtomicBoolean(false), settings, new PageFetcher(settings),
+                fetchExecutorFactory, pageManager, finderLemma, textAnalyzer, knownPages, new SimpleMeterRegistry());
+    }
+}
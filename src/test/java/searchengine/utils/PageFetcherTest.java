@@ -0,0 +1,79 @@
+package searchengine.utils;
+
+import org.jsoup.Connection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.indexing.PageFingerprint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageFetcherTest {
+    private SyntheticSite site;
+
+    @BeforeEach
+    void startSite() throws Exception {
+        site = new SyntheticSite()
+                .page("/", "Главная", "/a")
+                .page("/a", "Страница A");
+    }
+
+    @AfterEach
+    void stopSite() {
+        site.close();
+    }
+
+    @Test
+    void limitsRequestsPerHostAndInTotal() throws Exception {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setMaxInFlight(3);
+        settings.setMaxInFlightPerSite(2);
+        PageFetcher pageFetcher = new PageFetcher(settings);
+        site.responseDelayMs(100);
+
+        // Один сервер под двумя именами — для загрузчика это два разных хоста
+        String port = site.url().substring(site.url().lastIndexOf(':'));
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Connection.Response>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(executor.submit(() -> pageFetcher.fetch("http://localhost" + port + "/a")));
+                responses.add(executor.submit(() -> pageFetcher.fetch("http://127.0.0.1" + port + "/a")));
+            }
+            for (Future<Connection.Response> response : responses) {
+                assertThat(response.get().statusCode()).isEqualTo(200);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(site.maxInFlight()).isEqualTo(3);
+        assertThat(site.maxInFlight("localhost")).isLessThanOrEqualTo(2);
+        assertThat(site.maxInFlight("127.0.0.1")).isLessThanOrEqualTo(2);
+        assertThat(pageFetcher.getInFlight()).isZero();
+    }
+
+    @Test
+    void sendsValidatorsAndRecognisesNotModified() throws Exception {
+        PageFetcher pageFetcher = new PageFetcher(new CrawlerSettings());
+        String etag = SyntheticSite.etag(site.html("/a"));
+
+        Connection.Response unchanged = pageFetcher.fetch(site.url("/a"),
+                new PageFingerprint(1, "/a", etag, null, "hash"));
+        assertThat(PageFetcher.isNotModified(unchanged)).isTrue();
+        assertThat(unchanged.bodyAsBytes()).isEmpty();
+
+        Connection.Response changed = pageFetcher.fetch(site.url("/a"),
+                new PageFingerprint(1, "/a", "\"stale\"", null, "hash"));
+        assertThat(PageFetcher.isNotModified(changed)).isFalse();
+        assertThat(changed.header("ETag")).isEqualTo(etag);
+        assertThat(changed.body()).contains("Страница A");
+    }
+}
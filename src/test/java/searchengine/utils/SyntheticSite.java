@@ -0,0 +1,150 @@
+package searchengine.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Синтетический сайт на встроенном HTTP-сервере JDK: страницы задаются в тесте, на каждую выдаётся ETag
+ * и ответ 304 на совпадающий If-None-Match. Сервер считает запросы и наибольшее число одновременных
+ * запросов — всего и по заголовку Host.
+ */
+class SyntheticSite implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, String> pages = new ConcurrentHashMap<>();
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Map<String, AtomicInteger> hostInFlight = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hostMaxInFlight = new ConcurrentHashMap<>();
+    private volatile long responseDelayMs;
+
+    SyntheticSite() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    String url(String path) {
+        return url() + path;
+    }
+
+    /**
+     * Страница со ссылками на другие пути сайта.
+     */
+    SyntheticSite page(String path, String title, String... links) {
+        StringBuilder html = new StringBuilder("<html><head><title>").append(title).append("</title></head><body><p>")
+                .append(title).append("</p>");
+        for (String link : links) {
+            html.append("<a href=\"").append(link).append("\">").append(link).append("</a>");
+        }
+        pages.put(path, html.append("</body></html>").toString());
+        return this;
+    }
+
+    SyntheticSite remove(String path) {
+        pages.remove(path);
+        return this;
+    }
+
+    SyntheticSite fail(String path, int status) {
+        failures.put(path, status);
+        return this;
+    }
+
+    SyntheticSite responseDelayMs(long responseDelayMs) {
+        this.responseDelayMs = responseDelayMs;
+        return this;
+    }
+
+    String html(String path) {
+        return pages.get(path);
+    }
+
+    static String etag(String html) {
+        return "\"" + Integer.toHexString(html.hashCode()) + "\"";
+    }
+
+    int requests(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    int maxInFlight(String host) {
+        AtomicInteger max = hostMaxInFlight.get(host);
+        return max == null ? 0 : max.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String host = exchange.getRequestHeaders().getFirst("Host").replaceFirst(":\\d+$", "");
+        requests.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        AtomicInteger hostCounter = hostInFlight.computeIfAbsent(host, key -> new AtomicInteger());
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        hostMaxInFlight.computeIfAbsent(host, key -> new AtomicInteger())
+                .accumulateAndGet(hostCounter.incrementAndGet(), Math::max);
+        try {
+            if (responseDelayMs > 0) {
+                Thread.sleep(responseDelayMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Запрос перестаёт считаться до ответа: получив тело, клиент сразу шлёт следующий
+            hostCounter.decrementAndGet();
+            inFlight.decrementAndGet();
+        }
+        try {
+            respond(exchange, path);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange, String path) throws IOException {
+        Integer failure = failures.get(path);
+        String html = pages.get(path);
+        if (failure != null || html == null) {
+            exchange.sendResponseHeaders(failure != null ? failure : 404, -1);
+            return;
+        }
+        String etag = etag(html);
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}